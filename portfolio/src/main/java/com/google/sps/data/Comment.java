@@ -35,6 +35,10 @@ public final class Comment {
     this.sentimentScore = sentimentScore;
   }
 
+  public long getId() {
+    return id;
+  }
+
   public String getMessage() {
     return message;
   }
@@ -0,0 +1,356 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.DatastoreService.KeyRangeState;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.KeyRange;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** 
+ * Class that moves all the Comment entities in and out of datastore as gzipped NDJSON
+ * Every line is one comment: {"id":..,"message":..,"addedBy":..,"email":..,
+ * "addedDate":milliseconds since epoch,"sentimentScore":..}
+ * Both directions work chunk by chunk, so memory does not grow with the number of comments.
+ * App Engine still buffers whole requests and responses, up to 32 MB and 60 seconds, so
+ * exports are split into pages continued with a cursor. Pages are separate gzip members,
+ * and their concatenation is still a valid archive.
+ */
+public final class CommentArchive {
+
+  // Number of comments read from datastore or put to datastore at once
+  private static final int CHUNK_SIZE = 500;
+
+  // First two bytes of every gzip stream
+  private static final int GZIP_MAGIC_FIRST = 0x1f;
+  private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+  private static final Logger logger = Logger.getLogger(CommentArchive.class.getName());
+
+  private CommentArchive() {}
+
+  /** Class containing what an import did */
+  public static final class ImportResult {
+    private long importedComments = 0;
+    private long overwrittenComments = 0;
+    private long contendedComments = 0;
+
+    public long getImportedComments() {
+      return importedComments;
+    }
+
+    /** Returns the number of imported comments that replaced an existing comment */
+    public long getOverwrittenComments() {
+      return overwrittenComments;
+    }
+
+    /** 
+     * Returns the number of imported comments whose ids datastore may already have given out,
+     * a new comment may get one of those ids and overwrite the imported comment
+     */
+    public long getContendedComments() {
+      return contendedComments;
+    }
+  }
+
+  /** 
+   * Method that writes up to maxComments comments to outputStream, oldest key first,
+   * starting at startCursor, or at the first comment if it is null
+   * Each chunk is a separate query continuing from the previous chunk's cursor
+   * Returns the web-safe cursor of the next page, or null if all comments were written
+   */
+  public static String exportComments(DatastoreService datastore, OutputStream outputStream,
+      String startCursor, int maxComments) throws IOException {
+    GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8));
+    // JsonWriter has no buffer of its own, so the newlines can go straight to writer
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    jsonWriter.setLenient(true);
+
+    Query query = new Query("Comment");
+    Cursor cursor = startCursor != null ? Cursor.fromWebSafeString(startCursor) : null;
+    int remainingComments = maxComments;
+    String nextCursor = null;
+    while (remainingComments > 0) {
+      int limit = Math.min(CHUNK_SIZE, remainingComments);
+      FetchOptions fetchOptions = FetchOptions.Builder.withLimit(limit);
+      if (cursor != null) {
+        fetchOptions.startCursor(cursor);
+      }
+      QueryResultList<Entity> chunk = datastore.prepare(query).asQueryResultList(fetchOptions);
+      for (Entity entity : chunk) {
+        writeComment(jsonWriter, entity);
+        writer.write('\n');
+      }
+      remainingComments -= chunk.size();
+
+      if (chunk.size() < limit) {
+        break;
+      }
+      cursor = chunk.getCursor();
+      if (remainingComments == 0) {
+        // The next page may turn out empty if this one ended with the last comment
+        nextCursor = cursor.toWebSafeString();
+      }
+    }
+
+    writer.flush();
+    gzipStream.finish();
+    return nextCursor;
+  }
+
+  /** 
+   * Method that reads every comment in inputStream without saving them
+   * Used to check a whole archive before importing any of it
+   * Returns the number of comments, throws if the input is malformed
+   */
+  public static long countComments(InputStream inputStream) throws IOException {
+    long[] count = {0};
+    readComments(inputStream, entity -> count[0]++);
+    return count[0];
+  }
+
+  /** 
+   * Method that puts every comment read from inputStream to datastore, keeping their ids
+   * The ids are reserved first, so datastore never allocates them to new comments
+   * The input can be gzipped or plain NDJSON, and gzipped pages can be concatenated
+   * onChunkSaved is called with every chunk of entities after it was put
+   * If the input is malformed the chunks before the malformed comment are already saved,
+   * so check it with countComments first
+   */
+  public static ImportResult importComments(DatastoreService datastore, InputStream inputStream,
+      Consumer<List<Entity>> onChunkSaved) throws IOException {
+    ImportResult result = new ImportResult();
+    List<Entity> chunk = new ArrayList<>();
+    readComments(inputStream, entity -> {
+      chunk.add(entity);
+      if (chunk.size() == CHUNK_SIZE) {
+        putChunk(datastore, chunk, onChunkSaved, result);
+      }
+    });
+    putChunk(datastore, chunk, onChunkSaved, result);
+    return result;
+  }
+
+  /** 
+   * Method that calls onComment with the entity of every comment read from inputStream
+   * Throws an IOException for any malformed comment
+   */
+  private static void readComments(InputStream inputStream, Consumer<Entity> onComment)
+      throws IOException {
+    Reader reader = new BufferedReader(
+        new InputStreamReader(decompressIfGzipped(inputStream), StandardCharsets.UTF_8));
+
+    // JsonReader fails on an empty document, which an empty exported page is
+    reader.mark(1);
+    if (reader.read() == -1) {
+      return;
+    }
+    reader.reset();
+
+    JsonReader jsonReader = new JsonReader(reader);
+    // Lenient readers accept many top level values, one per line
+    jsonReader.setLenient(true);
+    try {
+      while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+        onComment.accept(readComment(jsonReader));
+      }
+    } catch (IllegalStateException | NumberFormatException e) {
+      // Gson throws these for valid JSON that isn't a comment
+      throw new IOException("Malformed comment at " + jsonReader.getPath(), e);
+    }
+  }
+
+  /** 
+   * Method that reserves the chunk's ids, puts the chunk with a single datastore call
+   * and clears it, adding what happened to result
+   */
+  private static void putChunk(DatastoreService datastore, List<Entity> chunk,
+      Consumer<List<Entity>> onChunkSaved, ImportResult result) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+
+    reserveIds(datastore, chunk, result);
+    datastore.put(chunk);
+    result.importedComments += chunk.size();
+    onChunkSaved.accept(new ArrayList<>(chunk));
+    chunk.clear();
+  }
+
+  /** 
+   * Method that reserves the ids of the chunk's entities
+   * Only runs of consecutive ids are reserved together, so scattered ids don't reserve
+   * everything between them, at the cost of one datastore call per run
+   * Counts the comments that will overwrite existing ones and the ones whose ids
+   * datastore may already have given out
+   */
+  private static void reserveIds(DatastoreService datastore, List<Entity> chunk,
+      ImportResult result) {
+    long[] ids = new long[chunk.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = chunk.get(i).getKey().getId();
+    }
+    Arrays.sort(ids);
+
+    List<Key> collidingKeys = new ArrayList<>();
+    int runStart = 0;
+    for (int i = 1; i <= ids.length; i++) {
+      if (i < ids.length && ids[i] <= ids[i - 1] + 1) {
+        continue;
+      }
+
+      long startId = ids[runStart];
+      long endId = ids[i - 1];
+      KeyRangeState state =
+          datastore.allocateIdRange(new KeyRange(null, "Comment", startId, endId));
+      if (state == KeyRangeState.CONTENTION) {
+        result.contendedComments += i - runStart;
+        logger.warning("Imported comment ids " + startId + " to " + endId
+            + " may already be given out to new comments");
+      } else if (state == KeyRangeState.COLLISION) {
+        // Overwriting the existing comments is what an import of the same ids does
+        for (int j = runStart; j < i; j++) {
+          if (j == runStart || ids[j] != ids[j - 1]) {
+            collidingKeys.add(KeyFactory.createKey("Comment", ids[j]));
+          }
+        }
+      }
+      runStart = i;
+    }
+
+    if (!collidingKeys.isEmpty()) {
+      Map<Key, Entity> existingEntities = datastore.get(collidingKeys);
+      result.overwrittenComments += existingEntities.size();
+    }
+  }
+
+  /** 
+   * Method that wraps inputStream in a GZIPInputStream if it starts with the gzip magic bytes
+   */
+  private static InputStream decompressIfGzipped(InputStream inputStream) throws IOException {
+    InputStream bufferedStream = new BufferedInputStream(inputStream);
+    bufferedStream.mark(2);
+    int first = bufferedStream.read();
+    int second = bufferedStream.read();
+    bufferedStream.reset();
+    if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND) {
+      return new GZIPInputStream(bufferedStream);
+    }
+    return bufferedStream;
+  }
+
+  /** 
+   * Method that writes a comment entity as a JSON object
+   */
+  private static void writeComment(JsonWriter out, Entity entity) throws IOException {
+    Date addedDate = (Date) entity.getProperty("addedDate");
+
+    out.beginObject();
+    out.name("id").value(entity.getKey().getId());
+    out.name("message").value((String) entity.getProperty("message"));
+    out.name("addedBy").value((String) entity.getProperty("addedBy"));
+    out.name("email").value((String) entity.getProperty("email"));
+    out.name("addedDate").value(addedDate == null ? null : addedDate.getTime());
+    out.name("sentimentScore").value((Double) entity.getProperty("sentimentScore"));
+    out.endObject();
+  }
+
+  /** 
+   * Method that reads a JSON object written by writeComment back to a comment entity
+   * Unknown names are skipped
+   */
+  private static Entity readComment(JsonReader in) throws IOException {
+    long id = 0;
+    String message = null;
+    String addedBy = null;
+    String email = null;
+    Date addedDate = null;
+    Double sentimentScore = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        continue;
+      }
+      switch (name) {
+        case "id":
+          id = in.nextLong();
+          break;
+        case "message":
+          message = in.nextString();
+          break;
+        case "addedBy":
+          addedBy = in.nextString();
+          break;
+        case "email":
+          email = in.nextString();
+          break;
+        case "addedDate":
+          addedDate = new Date(in.nextLong());
+          break;
+        case "sentimentScore":
+          sentimentScore = in.nextDouble();
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    if (id <= 0) {
+      throw new IOException("Comment without a valid id at " + in.getPath());
+    }
+
+    Entity entity = new Entity(KeyFactory.createKey("Comment", id));
+    entity.setProperty("message", message);
+    entity.setProperty("addedBy", addedBy);
+    entity.setProperty("email", email);
+    entity.setProperty("addedDate", addedDate);
+    entity.setProperty("sentimentScore", sentimentScore);
+    return entity;
+  }
+}
@@ -0,0 +1,249 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/** 
+ * Class containing the latest comment additions and removals, shared by all instances in memcache
+ * Every event gets a sequence number from a memcache counter and is stored under it,
+ * readers ask for the events after the last one they saw, on any instance
+ * Readers on the instance that published an event are woken up right away, readers on
+ * other instances find it the next time they check the counter, at most every pollMillis
+ */
+public final class CommentEventBuffer {
+
+  // Number of events a reader can be behind, readers further behind have to fetch the comments
+  private static final int CAPACITY = 1024;
+
+  // How often an instance reads the shared counter while readers wait
+  private static final long POLL_MILLIS = 1000;
+
+  // How long events stay in memcache, memcache may also evict them earlier
+  private static final int EVENT_EXPIRATION_SECONDS = 10 * 60;
+
+  private static final String SEQUENCE_KEY = "CommentEvent.lastSequence";
+  private static final String EVENT_KEY_PREFIX = "CommentEvent.";
+
+  private static final Logger logger = Logger.getLogger(CommentEventBuffer.class.getName());
+
+  private static final CommentEventBuffer INSTANCE = new CommentEventBuffer(
+      MemcacheServiceFactory.getMemcacheService(), CAPACITY, POLL_MILLIS);
+
+  // Returned by sequenceOf for malformed event ids
+  public static final long UNKNOWN_SEQUENCE = -1;
+
+  private final MemcacheService memcache;
+  private final int capacity;
+  private final long pollMillis;
+
+  // Last sequence number read from or written to memcache by this instance, and when it was read
+  private long lastSequence = 0;
+  private long lastSequenceReadMillis = 0;
+
+  /** Class containing a comment that was added or removed, as the JSON sent to clients */
+  public static final class CommentEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final String type;
+    private final long commentId;
+    private final String data;
+
+    private CommentEvent(long sequence, String type, long commentId, String data) {
+      this.sequence = sequence;
+      this.type = type;
+      this.commentId = commentId;
+      this.data = data;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+
+    /** Returns "added" or "removed" */
+    public String getType() {
+      return type;
+    }
+
+    public long getCommentId() {
+      return commentId;
+    }
+
+    /** Returns the added comment as JSON, or {"id":commentId} for a removal */
+    public String getData() {
+      return data;
+    }
+  }
+
+  CommentEventBuffer(MemcacheService memcache, int capacity, long pollMillis) {
+    this.memcache = memcache;
+    this.capacity = capacity;
+    this.pollMillis = pollMillis;
+  }
+
+  /** 
+   * Method that returns the buffer used by the whole instance
+   */
+  public static CommentEventBuffer getInstance() {
+    return INSTANCE;
+  }
+
+  /** 
+   * Method that publishes that comment was added
+   */
+  public void publishAdded(Comment comment) {
+    publish("added", comment.getId(), Json.gson().toJson(comment, Comment.class));
+  }
+
+  /** 
+   * Method that publishes that the comment with id was removed
+   */
+  public void publishRemoved(long commentId) {
+    publish("removed", commentId, "{\"id\":" + commentId + "}");
+  }
+
+  /** 
+   * Method that returns the event id sent to clients for sequence
+   */
+  public String toEventId(long sequence) {
+    return Long.toString(sequence);
+  }
+
+  /** 
+   * Method that returns the sequence in an event id made by toEventId
+   * Returns UNKNOWN_SEQUENCE if the id is malformed
+   */
+  public long sequenceOf(String eventId) {
+    try {
+      long sequence = Long.parseLong(eventId);
+      return sequence >= 0 ? sequence : UNKNOWN_SEQUENCE;
+    } catch (NumberFormatException e) {
+      return UNKNOWN_SEQUENCE;
+    }
+  }
+
+  /** 
+   * Method that returns the sequence number of the last published event
+   * Reads the shared counter if this instance did not read it in the last pollMillis
+   */
+  public synchronized long getLastSequence() {
+    long now = System.currentTimeMillis();
+    if (now - lastSequenceReadMillis >= pollMillis) {
+      readLastSequence(now);
+    }
+    return lastSequence;
+  }
+
+  /** 
+   * Method that returns the events published after sequence, waiting up to timeoutMillis
+   * for one if there are none yet
+   * Returns null if the reader missed events, because it is too far behind or they were
+   * evicted from memcache, or if sequence is unknown
+   */
+  public List<CommentEvent> awaitEventsAfter(long sequence, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      long observedSequence = getLastSequence();
+      List<CommentEvent> events = eventsAfter(sequence);
+      long remainingMillis = deadline - System.currentTimeMillis();
+      if (events == null || !events.isEmpty() || remainingMillis <= 0) {
+        return events;
+      }
+      waitForPublish(Math.max(sequence, observedSequence),
+          Math.min(remainingMillis, Math.max(pollMillis, 1)));
+    }
+  }
+
+  /** 
+   * Method that returns the events published after sequence without waiting
+   * Returns null if the reader missed events, because it is too far behind or they were
+   * evicted from memcache, or if sequence is unknown
+   * An event whose counter was taken but which is not stored yet ends the returned events,
+   * so the reader gets it the next time
+   */
+  public List<CommentEvent> eventsAfter(long sequence) {
+    if (sequence < 0) {
+      return null;
+    }
+    long last = getLastSequence();
+    if (sequence > last) {
+      // The reader may have seen an event newer than what this instance read last
+      synchronized (this) {
+        readLastSequence(System.currentTimeMillis());
+        last = lastSequence;
+      }
+    }
+    if (sequence > last || last - sequence > capacity) {
+      return null;
+    }
+
+    List<String> keys = new ArrayList<>();
+    for (long next = sequence + 1; next <= last; next++) {
+      keys.add(EVENT_KEY_PREFIX + next);
+    }
+    Map<String, Object> storedEvents = memcache.getAll(keys);
+
+    List<CommentEvent> newEvents = new ArrayList<>();
+    for (String key : keys) {
+      CommentEvent event = (CommentEvent) storedEvents.get(key);
+      if (event == null) {
+        // A missing event followed by stored ones was evicted, otherwise it is still being stored
+        return storedEvents.size() > newEvents.size() ? null : newEvents;
+      }
+      newEvents.add(event);
+    }
+    return newEvents;
+  }
+
+  private void publish(String type, long commentId, String data) {
+    // The counter starts from the time when it is missing, so it never goes back after an eviction
+    Long sequence = memcache.increment(SEQUENCE_KEY, 1, System.currentTimeMillis() * 1000);
+    if (sequence == null) {
+      logger.warning("Could not publish the " + type + " event of comment " + commentId);
+      return;
+    }
+    memcache.put(EVENT_KEY_PREFIX + sequence, new CommentEvent(sequence, type, commentId, data),
+        Expiration.byDeltaSeconds(EVENT_EXPIRATION_SECONDS));
+
+    synchronized (this) {
+      lastSequence = Math.max(lastSequence, sequence);
+      notifyAll();
+    }
+  }
+
+  private synchronized void waitForPublish(long observedSequence, long timeoutMillis)
+      throws InterruptedException {
+    if (lastSequence <= observedSequence) {
+      wait(timeoutMillis);
+    }
+  }
+
+  private synchronized void readLastSequence(long now) {
+    Object storedSequence = memcache.get(SEQUENCE_KEY);
+    if (storedSequence != null) {
+      lastSequence = Math.max(lastSequence, ((Number) storedSequence).longValue());
+    }
+    lastSequenceReadMillis = now;
+  }
+}
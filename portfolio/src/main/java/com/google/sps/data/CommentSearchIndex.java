@@ -0,0 +1,383 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** 
+ * Class containing an in-memory inverted index over the comments' message and addedBy
+ *
+ * Every indexed comment gets an increasing document number, so posting lists stay sorted
+ * by only appending to them. A query returns the comments containing all its terms,
+ * ranked by TF-IDF, then by added date, newest first. Removed comments are marked in a bitset
+ * and skipped, the index is compacted when more than half of the documents were removed.
+ * A load re-reads all the comments, and the comments indexed before it that it didn't read
+ * are removed, so deletions the instance was not told about are dropped by the next load.
+ */
+public final class CommentSearchIndex {
+
+  // Splits text into terms on anything that is not a letter or a digit
+  private static final String TOKEN_SEPARATOR = "[^\\p{L}\\p{N}]+";
+
+  private static final CommentSearchIndex INSTANCE = new CommentSearchIndex();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Indexed comments by document number, null for removed ones
+  private final List<Comment> documents = new ArrayList<>();
+
+  // Document number of every indexed comment id
+  private final Map<Long, Integer> documentsById = new HashMap<>();
+
+  // Posting list of every term
+  private final Map<String, PostingList> postings = new HashMap<>();
+
+  // Documents that were removed but are still in posting lists
+  private final BitSet removed = new BitSet();
+  private int removedCount = 0;
+
+  // Ids removed since startLoading, which addLoaded must not add back, null when not loading
+  private Set<Long> removedWhileLoading = null;
+
+  // Ids indexed when the load started and not read by it yet, null when not loading
+  private Set<Long> notLoadedYet = null;
+
+  /** Class containing the sorted documents a term appears in and how often */
+  static final class PostingList {
+    private int[] documentNumbers = new int[4];
+    private int[] frequencies = new int[4];
+    private int size = 0;
+
+    private void add(int documentNumber, int frequency) {
+      if (size == documentNumbers.length) {
+        documentNumbers = Arrays.copyOf(documentNumbers, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      documentNumbers[size] = documentNumber;
+      frequencies[size] = frequency;
+      size++;
+    }
+
+    /** 
+     * Method that returns the first position at or after start holding a document >= target
+     * Jumps over sqrt(size) documents at a time while the skip target is still too small
+     */
+    int advance(int start, int target) {
+      int skip = Math.max(1, (int) Math.sqrt(size));
+      int position = start;
+      while (position + skip < size && documentNumbers[position + skip] <= target) {
+        position += skip;
+      }
+      while (position < size && documentNumbers[position] < target) {
+        position++;
+      }
+      return position;
+    }
+  }
+
+  /** Class containing a matching document, its score and when it was added */
+  private static final class Match {
+    private final int documentNumber;
+    private final double score;
+    private final long addedMillis;
+
+    private Match(int documentNumber, double score, long addedMillis) {
+      this.documentNumber = documentNumber;
+      this.score = score;
+      this.addedMillis = addedMillis;
+    }
+  }
+
+  /** 
+   * Method that returns the index shared by the whole instance
+   */
+  public static CommentSearchIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /** 
+   * Method that indexes comment
+   * A comment that is already indexed is ignored
+   */
+  public void add(Comment comment) {
+    lock.writeLock().lock();
+    try {
+      if (!documentsById.containsKey(comment.getId())) {
+        index(comment);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that indexes comment, replacing the indexed comment with the same id if any
+   */
+  public void replace(Comment comment) {
+    lock.writeLock().lock();
+    try {
+      remove(comment.getId());
+      index(comment);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that starts loading the existing comments with addLoaded
+   * Comments removed until finishLoading are remembered, so a load that read them
+   * before they were removed doesn't add them back
+   */
+  public void startLoading() {
+    lock.writeLock().lock();
+    try {
+      removedWhileLoading = new HashSet<>();
+      notLoadedYet = new HashSet<>(documentsById.keySet());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that indexes a comment read by the load, unless it was removed since startLoading
+   */
+  public void addLoaded(Comment comment) {
+    lock.writeLock().lock();
+    try {
+      if (notLoadedYet != null) {
+        notLoadedYet.remove(comment.getId());
+      }
+      if (removedWhileLoading == null || !removedWhileLoading.contains(comment.getId())) {
+        add(comment);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that ends the load started by startLoading after it read all the comments
+   * Removes the comments that were indexed before the load and that it didn't read,
+   * they were deleted from datastore
+   */
+  public void finishLoading() {
+    lock.writeLock().lock();
+    try {
+      Set<Long> deletedIds = notLoadedYet;
+      removedWhileLoading = null;
+      notLoadedYet = null;
+      if (deletedIds != null) {
+        for (long commentId : deletedIds) {
+          remove(commentId);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that removes the comment with id from the index
+   */
+  public void remove(long commentId) {
+    lock.writeLock().lock();
+    try {
+      if (removedWhileLoading != null) {
+        removedWhileLoading.add(commentId);
+      }
+
+      Integer documentNumber = documentsById.remove(commentId);
+      if (documentNumber == null) {
+        return;
+      }
+
+      documents.set(documentNumber, null);
+      removed.set(documentNumber);
+      removedCount++;
+      if (removedCount > documents.size() / 2) {
+        compact();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that returns up to maxResults comments containing all terms of query, best first
+   */
+  public List<Comment> search(String query, int maxResults) {
+    List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+
+    lock.readLock().lock();
+    try {
+      if (terms.isEmpty() || maxResults <= 0) {
+        return new ArrayList<>();
+      }
+
+      // Get the posting lists, rarest term first so the intersection stays small
+      List<PostingList> lists = new ArrayList<>();
+      for (String term : terms) {
+        PostingList list = postings.get(term);
+        if (list == null) {
+          return new ArrayList<>();
+        }
+        lists.add(list);
+      }
+      lists.sort((first, second) -> Integer.compare(first.size, second.size));
+
+      // Keep the best maxResults matches, the worst one on top of the heap
+      PriorityQueue<Match> best = new PriorityQueue<>(
+          (first, second) -> first.score != second.score
+              ? Double.compare(first.score, second.score)
+              : first.addedMillis != second.addedMillis
+                  ? Long.compare(first.addedMillis, second.addedMillis)
+                  : Integer.compare(first.documentNumber, second.documentNumber));
+      intersect(lists, best, maxResults);
+
+      // Return the matches best first
+      Comment[] results = new Comment[best.size()];
+      for (int i = results.length - 1; i >= 0; i--) {
+        results[i] = documents.get(best.poll().documentNumber);
+      }
+      return new ArrayList<>(Arrays.asList(results));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that returns the number of indexed comments
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return documentsById.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** 
+   * Method that walks the posting lists together and scores the documents in all of them
+   */
+  private void intersect(List<PostingList> lists, PriorityQueue<Match> best, int maxResults) {
+    int documentCount = documentsById.size();
+    int[] positions = new int[lists.size()];
+    PostingList rarest = lists.get(0);
+
+    for (positions[0] = 0; positions[0] < rarest.size; positions[0]++) {
+      int candidate = rarest.documentNumbers[positions[0]];
+      if (removed.get(candidate)) {
+        continue;
+      }
+
+      // Advance the other lists to the candidate, stop if one doesn't contain it
+      boolean inAll = true;
+      for (int i = 1; i < lists.size() && inAll; i++) {
+        positions[i] = lists.get(i).advance(positions[i], candidate);
+        inAll = positions[i] < lists.get(i).size
+            && lists.get(i).documentNumbers[positions[i]] == candidate;
+      }
+      if (!inAll) {
+        continue;
+      }
+
+      // Score the document with TF-IDF
+      double score = 0;
+      for (int i = 0; i < lists.size(); i++) {
+        PostingList list = lists.get(i);
+        double inverseFrequency = Math.log(1 + (double) documentCount / list.size);
+        score += list.frequencies[positions[i]] * inverseFrequency;
+      }
+
+      Date addedDate = documents.get(candidate).getAddedDate();
+      best.add(new Match(candidate, score, addedDate != null ? addedDate.getTime() : 0));
+      if (best.size() > maxResults) {
+        best.poll();
+      }
+    }
+  }
+
+  /** 
+   * Method that adds comment to the index, the caller holds the write lock
+   */
+  private void index(Comment comment) {
+    int documentNumber = documents.size();
+    documents.add(comment);
+    documentsById.put(comment.getId(), documentNumber);
+
+    Map<String, Integer> termFrequencies = new LinkedHashMap<>();
+    List<String> terms = tokenize(comment.getMessage());
+    terms.addAll(tokenize(comment.getAddedBy()));
+    for (String term : terms) {
+      termFrequencies.merge(term, 1, Integer::sum);
+    }
+    for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+      postings.computeIfAbsent(entry.getKey(), term -> new PostingList())
+          .add(documentNumber, entry.getValue());
+    }
+  }
+
+  /** 
+   * Method that rebuilds the index without the removed documents
+   */
+  private void compact() {
+    List<Comment> comments = new ArrayList<>();
+    for (Comment comment : documents) {
+      if (comment != null) {
+        comments.add(comment);
+      }
+    }
+
+    documents.clear();
+    documentsById.clear();
+    postings.clear();
+    removed.clear();
+    removedCount = 0;
+    for (Comment comment : comments) {
+      add(comment);
+    }
+  }
+
+  /** 
+   * Method that splits text into lower case terms
+   */
+  private static List<String> tokenize(String text) {
+    List<String> terms = new ArrayList<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String term : text.toLowerCase(Locale.ROOT).split(TOKEN_SEPARATOR)) {
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+}
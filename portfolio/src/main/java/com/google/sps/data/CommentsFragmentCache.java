@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/** 
+ * Class that caches rendered HTML fragments of comments
+ * Fragments are dropped when comments are added or deleted on this instance,
+ * and expire after FRAGMENT_TTL_MILLIS to pick up changes made by other instances
+ */
+public final class CommentsFragmentCache {
+
+  // How long a rendered fragment is used before rendering it again
+  private static final long FRAGMENT_TTL_MILLIS = 30 * 1000;
+
+  // Maximum number of fragments kept, the cache is cleared when it grows above it
+  private static final int MAX_FRAGMENTS = 64;
+
+  private static final ConcurrentMap<String, CachedFragment> fragments = new ConcurrentHashMap<>();
+
+  // Incremented on every invalidation, so fragments rendered before it are not cached
+  private static final AtomicLong generation = new AtomicLong();
+
+  /** Class containing a rendered fragment and the time it expires at */
+  private static final class CachedFragment {
+    private final String html;
+    private final long expiresAtMillis;
+
+    private CachedFragment(String html) {
+      this.html = html;
+      this.expiresAtMillis = System.currentTimeMillis() + FRAGMENT_TTL_MILLIS;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAtMillis;
+    }
+  }
+
+  private CommentsFragmentCache() {}
+
+  /** 
+   * Method that returns the fragment for key, rendering it with renderer if it is not cached
+   */
+  public static String get(String key, Supplier<String> renderer) {
+    CachedFragment cached = fragments.get(key);
+    if (cached != null && !cached.isExpired()) {
+      return cached.html;
+    }
+
+    long renderGeneration = generation.get();
+    String html = renderer.get();
+
+    if (fragments.size() >= MAX_FRAGMENTS) {
+      fragments.clear();
+    }
+    fragments.put(key, new CachedFragment(html));
+
+    // If comments changed while rendering, the fragment may already be stale
+    if (generation.get() != renderGeneration) {
+      fragments.remove(key);
+    }
+    return html;
+  }
+
+  /** 
+   * Method that drops all cached fragments, called when comments change
+   */
+  public static void invalidate() {
+    generation.incrementAndGet();
+    fragments.clear();
+  }
+}
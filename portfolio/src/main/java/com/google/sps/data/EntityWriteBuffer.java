@@ -0,0 +1,128 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/** 
+ * Class that saves entities to datastore in batched put calls
+ *
+ * Entities are buffered until maxBatchSize entities are pending or the oldest
+ * pending entity is older than maxDelayMillis, then all of them are saved with
+ * a single put. With maxBatchSize 1 every add is written through immediately.
+ *
+ * Durability: entities added to the buffer are only durable after the flush
+ * that saves them returns. Pending entities are lost if the instance stops
+ * before they are flushed, so callers should flush when shutting down. If a
+ * put fails, the entities stay pending and the exception is rethrown.
+ * Entities with the same complete key are coalesced, the last one added wins.
+ * An optional listener is called with every batch after it was saved.
+ *
+ * The thresholds are checked when entities are added, so with maxBatchSize above 1
+ * the owner has to call flushIfDue() periodically, otherwise a lone entity stays
+ * pending until the next add.
+ */
+public final class EntityWriteBuffer {
+
+  private final DatastoreService datastore;
+  private final int maxBatchSize;
+  private final long maxDelayMillis;
+  private final Consumer<List<Entity>> flushListener;
+
+  // Pending entities that don't have a complete key yet, in insertion order
+  private final List<Entity> pendingNewEntities = new ArrayList<>();
+
+  // Pending entities with a complete key, so later updates replace earlier ones
+  private final Map<Key, Entity> pendingKeyedEntities = new LinkedHashMap<>();
+
+  // Time when the oldest pending entity was added
+  private long oldestPendingMillis;
+
+  public EntityWriteBuffer(DatastoreService datastore, int maxBatchSize, long maxDelayMillis) {
+    this(datastore, maxBatchSize, maxDelayMillis, batch -> {});
+  }
+
+  public EntityWriteBuffer(DatastoreService datastore, int maxBatchSize, long maxDelayMillis,
+      Consumer<List<Entity>> flushListener) {
+    this.datastore = datastore;
+    this.maxBatchSize = Math.max(maxBatchSize, 1);
+    this.maxDelayMillis = Math.max(maxDelayMillis, 0);
+    this.flushListener = flushListener;
+  }
+
+  /** 
+   * Method that adds entities to the buffer
+   * Flushes the buffer if the size or time threshold was reached
+   */
+  public synchronized void add(Iterable<Entity> entities) {
+    if (pendingCount() == 0) {
+      oldestPendingMillis = System.currentTimeMillis();
+    }
+
+    for (Entity entity : entities) {
+      if (entity.getKey().isComplete()) {
+        pendingKeyedEntities.put(entity.getKey(), entity);
+      } else {
+        pendingNewEntities.add(entity);
+      }
+    }
+
+    if (pendingCount() >= maxBatchSize
+        || System.currentTimeMillis() - oldestPendingMillis >= maxDelayMillis) {
+      flush();
+    }
+  }
+
+  /** 
+   * Method that flushes the buffer if the oldest pending entity waited maxDelayMillis
+   */
+  public synchronized void flushIfDue() {
+    if (pendingCount() > 0 && System.currentTimeMillis() - oldestPendingMillis >= maxDelayMillis) {
+      flush();
+    }
+  }
+
+  /** 
+   * Method that saves all pending entities to datastore in one batch
+   */
+  public synchronized void flush() {
+    if (pendingCount() == 0) {
+      return;
+    }
+
+    List<Entity> batch = new ArrayList<>(pendingNewEntities);
+    batch.addAll(pendingKeyedEntities.values());
+    datastore.put(batch);
+
+    pendingNewEntities.clear();
+    pendingKeyedEntities.clear();
+
+    flushListener.accept(batch);
+  }
+
+  /** 
+   * Method that returns the number of entities waiting to be saved
+   */
+  public synchronized int pendingCount() {
+    return pendingNewEntities.size() + pendingKeyedEntities.size();
+  }
+}
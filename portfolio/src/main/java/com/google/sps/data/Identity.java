@@ -0,0 +1,102 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import javax.servlet.ServletRequest;
+
+/** 
+ * Class containing who is making the current request
+ * Servlets and filters read it with Identity.of(request), which resolves it at most once
+ * per request and only for the requests that ask for it
+ */
+public final class Identity {
+
+  // Name of the request attribute holding the Identity
+  private static final String IDENTITY_ATTRIBUTE = Identity.class.getName();
+
+  // Identity of a user that is not logged in
+  private static final Identity ANONYMOUS = new Identity(null, null, false);
+
+  private final String id;
+  private final String email;
+  private final boolean isAdmin;
+
+  // Looked up in the NicknameStore the first time it is needed, few requests need it
+  private String nickname;
+
+  public Identity(String id, String email, boolean isAdmin) {
+    this.id = id;
+    this.email = email;
+    this.isAdmin = isAdmin;
+    this.nickname = id == null ? "" : null;
+  }
+
+  public static Identity anonymous() {
+    return ANONYMOUS;
+  }
+
+  /** 
+   * Method that returns the identity of the user making request
+   * Asks the UserService the first time, and keeps the result in a request attribute
+   */
+  public static Identity of(ServletRequest request) {
+    Identity identity = (Identity) request.getAttribute(IDENTITY_ATTRIBUTE);
+    if (identity == null) {
+      identity = resolve();
+      request.setAttribute(IDENTITY_ATTRIBUTE, identity);
+    }
+    return identity;
+  }
+
+  /** 
+   * Method that asks the UserService who the current user is
+   */
+  private static Identity resolve() {
+    UserService userService = UserServiceFactory.getUserService();
+    com.google.appengine.api.users.User currentUser = userService.getCurrentUser();
+    if (currentUser == null) {
+      return ANONYMOUS;
+    }
+    return new Identity(currentUser.getUserId(), currentUser.getEmail(), userService.isUserAdmin());
+  }
+
+  public boolean isLoggedIn() {
+    return id != null;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public boolean isAdmin() {
+    return isAdmin;
+  }
+
+  /** 
+   * Method that returns the nickname of the user, from the NicknameStore cache
+   */
+  public synchronized String getNickname() {
+    if (nickname == null) {
+      nickname = NicknameStore.getNickname(id);
+    }
+    return nickname;
+  }
+}
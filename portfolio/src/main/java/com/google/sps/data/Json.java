@@ -0,0 +1,165 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/** 
+ * Class containing the Gson instance shared by the portfolio servlets
+ * The data classes are written by hand written writers, so no reflection
+ * happens when serializing them. The JSON is the same as reflective Gson produces,
+ * and reading it back uses Gson's reflective adapter.
+ */
+public final class Json {
+
+  // Gson's default Date adapter, so dates are formatted like before
+  private static final TypeAdapter<Date> DATE_ADAPTER = new Gson().getAdapter(Date.class);
+
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapterFactory(new WriterFactory<>(Comment.class, new CommentWriter()))
+      .registerTypeAdapterFactory(new WriterFactory<>(Language.class, new LanguageWriter()))
+      .registerTypeAdapterFactory(new WriterFactory<>(LoggedUser.class, new LoggedUserWriter()))
+      .registerTypeAdapterFactory(
+          new WriterFactory<>(NotLoggedUser.class, new NotLoggedUserWriter()))
+      .create();
+
+  private Json() {}
+
+  public static Gson gson() {
+    return GSON;
+  }
+
+  /** 
+   * Method that returns a JsonWriter writing UTF-8 to outputStream
+   * The caller has to flush the writer when done
+   */
+  public static JsonWriter newJsonWriter(OutputStream outputStream) throws IOException {
+    return GSON.newJsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+  }
+
+  /** 
+   * Method that writes src as UTF-8 JSON to outputStream
+   */
+  public static void write(Object src, OutputStream outputStream) throws IOException {
+    JsonWriter jsonWriter = newJsonWriter(outputStream);
+    GSON.toJson(src, src.getClass(), jsonWriter);
+    jsonWriter.flush();
+  }
+
+  /** Writes one data class to a JsonWriter, value is never null */
+  private interface Writer<T> {
+    void write(JsonWriter out, T value) throws IOException;
+  }
+
+  /** 
+   * Factory making a null safe adapter that writes with writer and reads with
+   * the adapter Gson would have used otherwise
+   */
+  private static final class WriterFactory<T> implements TypeAdapterFactory {
+    private final Class<T> type;
+    private final Writer<T> writer;
+
+    WriterFactory(Class<T> type, Writer<T> writer) {
+      this.type = type;
+      this.writer = writer;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+      if (typeToken.getRawType() != type) {
+        return null;
+      }
+      TypeAdapter<T> reader = gson.getDelegateAdapter(this, (TypeToken<T>) typeToken);
+      TypeAdapter<T> adapter = new TypeAdapter<T>() {
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+          writer.write(out, value);
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+          return reader.read(in);
+        }
+      };
+      return (TypeAdapter<R>) adapter.nullSafe();
+    }
+  }
+
+  /** Writer of a Comment */
+  private static final class CommentWriter implements Writer<Comment> {
+    @Override
+    public void write(JsonWriter out, Comment comment) throws IOException {
+      out.beginObject();
+      out.name("id").value(comment.getId());
+      out.name("message").value(comment.getMessage());
+      out.name("addedBy").value(comment.getAddedBy());
+      out.name("email").value(comment.getEmail());
+      if (comment.getAddedDate() != null) {
+        out.name("addedDate");
+        DATE_ADAPTER.write(out, comment.getAddedDate());
+      }
+      out.name("sentimentScore").value(comment.getSentimentScore());
+      out.endObject();
+    }
+  }
+
+  /** Writer of a Language */
+  private static final class LanguageWriter implements Writer<Language> {
+    @Override
+    public void write(JsonWriter out, Language language) throws IOException {
+      out.beginObject();
+      out.name("code").value(language.getCode());
+      out.name("displayName").value(language.getDisplayName());
+      out.endObject();
+    }
+  }
+
+  /** Writer of a LoggedUser */
+  private static final class LoggedUserWriter implements Writer<LoggedUser> {
+    @Override
+    public void write(JsonWriter out, LoggedUser user) throws IOException {
+      out.beginObject();
+      out.name("email").value(user.getEmail());
+      out.name("nickname").value(user.getNickname());
+      out.name("logoutURL").value(user.getLogoutURL());
+      out.name("isAdmin").value(user.isAdmin());
+      out.name("loggedIn").value(user.getLoggedIn());
+      out.endObject();
+    }
+  }
+
+  /** Writer of a NotLoggedUser */
+  private static final class NotLoggedUserWriter implements Writer<NotLoggedUser> {
+    @Override
+    public void write(JsonWriter out, NotLoggedUser user) throws IOException {
+      out.beginObject();
+      out.name("loginURL").value(user.getLoginURL());
+      out.name("loggedIn").value(user.getLoggedIn());
+      out.endObject();
+    }
+  }
+}
@@ -23,11 +23,15 @@ public final class Language {
   private final String displayName;
 
   public Language(String code) {
+    this(code, Locale.getDefault(Locale.Category.DISPLAY));
+  }
+
+  public Language(String code, Locale displayLocale) {
     this.code = code;
 
-    // Create a new Locale for the code and get its display name
+    // Create a new Locale for the code and get its display name in the displayLocale's language
     Locale loc = new Locale(code);
-    this.displayName = loc.getDisplayLanguage();
+    this.displayName = loc.getDisplayLanguage(displayLocale);
   }
 
   public String getCode() {
@@ -0,0 +1,265 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateOptions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+/** 
+ * Class containing the languages comments can be translated to
+ * The catalog is computed once per display language and kept serialized,
+ * both as plain and as gzip compressed JSON
+ */
+public final class LanguageCatalog {
+
+  // Display language used for requests whose language is not an ISO 639 code
+  private static final Locale DEFAULT_DISPLAY_LANGUAGE = Locale.ENGLISH;
+
+  // How long to wait before asking the translation backend again after it failed
+  private static final long BACKEND_RETRY_MILLIS = 5 * 60 * 1000;
+
+  // Current codes of the languages that Locale.getISOLanguages() lists by their old code on Java 8
+  private static final Map<String, String> CURRENT_CODES = new HashMap<>();
+  static {
+    CURRENT_CODES.put("iw", "he");
+    CURRENT_CODES.put("in", "id");
+    CURRENT_CODES.put("ji", "yi");
+  }
+
+  // All ISO 639 language codes, old and current, the only display languages catalogs are made for
+  private static final Set<String> ISO_LANGUAGES = createIsoLanguages();
+
+  // Language codes supported by the translation backend, loaded on first use
+  private static volatile Set<String> supportedCodes;
+
+  // Whether supportedCodes came from the backend, or are the fallback to all ISO codes
+  private static volatile boolean supportedCodesFromBackend;
+
+  // When the backend may be asked again, if supportedCodes are the fallback
+  private static volatile long backendRetryMillis;
+
+  // Catalogs already computed, keyed by the display language
+  private static final ConcurrentMap<Locale, LanguageCatalog> catalogs = new ConcurrentHashMap<>();
+
+  // The supported codes this catalog was made from
+  private final Set<String> codes;
+  private final List<Language> languages;
+  private final byte[] json;
+  private final byte[] gzippedJson;
+  private final String etag;
+  private final String gzippedEtag;
+
+  private LanguageCatalog(Locale displayLocale, Set<String> codes) {
+    List<Language> languages = new ArrayList<>();
+    for (String code : codes) {
+      languages.add(new Language(code, displayLocale));
+    }
+    this.codes = codes;
+    this.languages = Collections.unmodifiableList(languages);
+    this.json = Json.gson().toJson(languages).getBytes(StandardCharsets.UTF_8);
+    this.gzippedJson = gzip(json);
+    this.etag = createEtag(json, "");
+    this.gzippedEtag = createEtag(json, "-gzip");
+  }
+
+  /** 
+   * Method that returns the catalog with language names displayed in the displayLocale's language
+   * Languages that are not ISO 639 codes get the default display language, so the number of
+   * catalogs is bounded by the number of ISO languages
+   */
+  public static LanguageCatalog forLocale(Locale displayLocale) {
+    // Only the language matters for display names
+    String languageCode = displayLocale.getLanguage();
+    Locale language = ISO_LANGUAGES.contains(languageCode)
+        ? new Locale(languageCode) : DEFAULT_DISPLAY_LANGUAGE;
+
+    // Rebuild catalogs made before the supported codes changed
+    Set<String> codes = getSupportedCodes();
+    LanguageCatalog catalog = catalogs.get(language);
+    if (catalog == null || catalog.codes != codes) {
+      catalog = new LanguageCatalog(language, codes);
+      catalogs.put(language, catalog);
+    }
+    return catalog;
+  }
+
+  /** 
+   * Method that checks if comments can be translated to the language with code
+   */
+  public static boolean isSupported(String code) {
+    return code != null && getSupportedCodes().contains(code);
+  }
+
+  public List<Language> getLanguages() {
+    return languages;
+  }
+
+  public byte[] getJson() {
+    return json;
+  }
+
+  public byte[] getGzippedJson() {
+    return gzippedJson;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  /** 
+   * Method that returns the ETag of the gzipped JSON, which differs from the plain one's
+   */
+  public String getGzippedEtag() {
+    return gzippedEtag;
+  }
+
+  /** 
+   * Method that returns the ISO language codes that the translation backend supports
+   * If the backend can't be reached, all ISO language codes are returned,
+   * and the backend is asked again after BACKEND_RETRY_MILLIS
+   */
+  private static Set<String> getSupportedCodes() {
+    Set<String> codes = supportedCodes;
+    if (codes != null
+        && (supportedCodesFromBackend || System.currentTimeMillis() < backendRetryMillis)) {
+      return codes;
+    }
+
+    synchronized (LanguageCatalog.class) {
+      codes = supportedCodes;
+      if (codes != null
+          && (supportedCodesFromBackend || System.currentTimeMillis() < backendRetryMillis)) {
+        return codes;
+      }
+      if (codes != null) {
+        // Other requests keep using the fallback codes while this one asks the backend
+        backendRetryMillis = System.currentTimeMillis() + BACKEND_RETRY_MILLIS;
+      }
+      return loadSupportedCodes();
+    }
+  }
+
+  /** 
+   * Method that loads the supported codes, falling back to all ISO codes
+   */
+  private static Set<String> loadSupportedCodes() {
+    Set<String> backendCodes = loadBackendCodes();
+    Set<String> codes = filterIsoCodes(backendCodes);
+    supportedCodesFromBackend = backendCodes != null;
+    backendRetryMillis = System.currentTimeMillis() + BACKEND_RETRY_MILLIS;
+    supportedCodes = codes;
+    return codes;
+  }
+
+  /** 
+   * Method that returns the ISO language codes in backendCodes, or all of them if it is null
+   * Codes are in the order of Locale.getISOLanguages(), which is sorted by code
+   * Hebrew, Indonesian and Yiddish are returned with the code the backend uses,
+   * their current code if the backend is unknown
+   */
+  static Set<String> filterIsoCodes(Set<String> backendCodes) {
+    Set<String> isoCodes = new LinkedHashSet<>();
+    for (String code : Locale.getISOLanguages()) {
+      // Newer JDKs may already list the current code
+      String currentCode = CURRENT_CODES.getOrDefault(code, code);
+      String oldCode = code;
+      for (Map.Entry<String, String> entry : CURRENT_CODES.entrySet()) {
+        if (entry.getValue().equals(currentCode)) {
+          oldCode = entry.getKey();
+        }
+      }
+
+      if (backendCodes == null || backendCodes.contains(currentCode)) {
+        isoCodes.add(currentCode);
+      } else if (backendCodes.contains(oldCode)) {
+        isoCodes.add(oldCode);
+      }
+    }
+    return Collections.unmodifiableSet(isoCodes);
+  }
+
+  /** 
+   * Method that returns all ISO language codes, with both codes of the languages that changed
+   */
+  private static Set<String> createIsoLanguages() {
+    Set<String> isoLanguages = new HashSet<>(Arrays.asList(Locale.getISOLanguages()));
+    isoLanguages.addAll(CURRENT_CODES.keySet());
+    isoLanguages.addAll(CURRENT_CODES.values());
+    return Collections.unmodifiableSet(isoLanguages);
+  }
+
+  /** 
+   * Method that asks the translation backend which language codes it supports
+   * Returns null if the backend can't be reached
+   */
+  private static Set<String> loadBackendCodes() {
+    try {
+      Translate translate = TranslateOptions.getDefaultInstance().getService();
+      Set<String> codes = new HashSet<>();
+      for (com.google.cloud.translate.Language language : translate.listSupportedLanguages()) {
+        codes.add(language.getCode());
+      }
+      return codes;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** 
+   * Method that compresses data with gzip
+   */
+  private static byte[] gzip(byte[] data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzipStream = new GZIPOutputStream(bytes)) {
+      gzipStream.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** 
+   * Method that creates a strong ETag from the content's SHA-256 hash
+   * The suffix tells apart the encodings of the same content
+   */
+  private static String createEtag(byte[] data, String suffix) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+      return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + suffix + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
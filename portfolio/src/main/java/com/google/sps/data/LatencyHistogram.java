@@ -0,0 +1,137 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** 
+ * Class that records latencies in microseconds into log-linear buckets, without locks
+ *
+ * Like an HDR histogram, every power of two range is split into 16 equal buckets,
+ * so a recorded value is known within 1/16 of itself whatever its magnitude.
+ * Values up to about 19 hours fit in 544 counters; larger ones go in the last bucket.
+ * Percentiles return the upper bound of the bucket holding that rank.
+ */
+public final class LatencyHistogram {
+
+  // Every power of two is split into 2^SUB_BUCKET_BITS buckets
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  // Highest power of two that gets its own buckets, 2^36 microseconds is about 19 hours
+  private static final int MAX_EXPONENT = 36;
+
+  static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder totalCount = new LongAdder();
+  private final LongAdder totalMicros = new LongAdder();
+  private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+  /** 
+   * Method that records one latency, negative values count as 0
+   */
+  public void record(long micros) {
+    micros = Math.max(micros, 0);
+    counts.incrementAndGet(Math.min(bucketIndex(micros), BUCKET_COUNT - 1));
+    totalCount.increment();
+    totalMicros.add(micros);
+    maxMicros.accumulate(micros);
+  }
+
+  public long getCount() {
+    return totalCount.sum();
+  }
+
+  public long getTotalMicros() {
+    return totalMicros.sum();
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  /** 
+   * Method that returns the latencies at each of the quantiles, between 0 and 1
+   * All quantiles are read from the same pass over the counters
+   * Returns zeros if nothing was recorded
+   */
+  public long[] getQuantileMicros(double... quantiles) {
+    // Copy the counters, so every quantile sees the same counts
+    long[] snapshot = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+
+    long[] results = new long[quantiles.length];
+    if (count == 0) {
+      return results;
+    }
+    long max = getMaxMicros();
+    for (int q = 0; q < quantiles.length; q++) {
+      // Rank of the quantile, from 1 to count
+      long rank = Math.max(1, (long) Math.ceil(quantiles[q] * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += snapshot[i];
+        if (seen >= rank) {
+          results[q] = Math.min(bucketUpperBound(i), max);
+          break;
+        }
+      }
+    }
+    return results;
+  }
+
+  /** 
+   * Method that returns the index of the bucket holding value
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    // Top SUB_BUCKET_BITS bits after the leading one
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT * (shift + 1) + subBucket;
+  }
+
+  /** 
+   * Method that returns the smallest value of the bucket with index
+   */
+  static long bucketLowerBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    int subBucket = index % SUB_BUCKET_COUNT;
+    return (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+  }
+
+  /** 
+   * Method that returns the largest value of the bucket with index
+   */
+  static long bucketUpperBound(int index) {
+    if (index == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return bucketLowerBound(index + 1) - 1;
+  }
+}
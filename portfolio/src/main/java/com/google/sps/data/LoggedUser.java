@@ -14,11 +14,6 @@
 
 package com.google.sps.data;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import com.google.sps.data.User;
 
 /** Class containing a logged user. */
@@ -29,38 +24,16 @@ public final class LoggedUser extends User {
   private final String logoutURL;
   private Boolean isAdmin;
   
-  public LoggedUser(String id, String email, String logoutURL, Boolean isAdmin) {
+  public LoggedUser(String email, String nickname, String logoutURL, Boolean isAdmin) {
     // Init User super class with loggedIn = true
     super(true);
     
     this.email = email;
-    this.nickname = loadNickname(id);
+    this.nickname = nickname;
     this.logoutURL = logoutURL;
     this.isAdmin = isAdmin;
   }
 
-  /** 
-   * Method that loads user's nickname from the database based on id
-   */
-  private String loadNickname(String id) {
-    // Make a query to get the user entity with corresponding id from the database
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query =
-        new Query("User")
-            .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, id));
-    PreparedQuery results = datastore.prepare(query);
-    Entity entity = results.asSingleEntity();
-
-    // If the user doesn't have a nickname, return an empty string
-    if (entity == null) {
-      return "";
-    }
-
-    // Return the user's nickname
-    String nickname = (String) entity.getProperty("nickname");
-    return nickname;
-  }
-
   public String getNickname() {
       return nickname;
   }
@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** 
+ * Class that stores users' nicknames
+ * User entities are keyed by the user id, so they are loaded with a get instead of a query
+ * Older User entities have generated ids, they are found by their "id" property and moved
+ * to the user id key the first time they are read
+ * Recently used nicknames are kept in an in-memory cache shared by the whole instance
+ * Cached nicknames expire after CACHE_TTL_MILLIS, so changes made by other instances show up
+ */
+public final class NicknameStore {
+
+  // Maximum number of nicknames kept in the cache
+  private static final int CACHE_CAPACITY = 1000;
+
+  // How long a cached nickname is used before loading it again
+  private static final long CACHE_TTL_MILLIS = 10 * 60 * 1000;
+
+  private static final Logger logger = Logger.getLogger(NicknameStore.class.getName());
+
+  // Cache from user id to nickname, evicting the least recently used entry when full
+  private static final Map<String, CachedNickname> cache = Collections.synchronizedMap(
+      new LinkedHashMap<String, CachedNickname>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedNickname> eldest) {
+          return size() > CACHE_CAPACITY;
+        }
+      });
+
+  /** Class containing a cached nickname and the time it expires at */
+  private static final class CachedNickname {
+    private final String nickname;
+    private final long expiresAtMillis;
+
+    private CachedNickname(String nickname) {
+      this.nickname = nickname;
+      this.expiresAtMillis = System.currentTimeMillis() + CACHE_TTL_MILLIS;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAtMillis;
+    }
+  }
+
+  private NicknameStore() {}
+
+  /** 
+   * Method that returns the nickname of the user with id
+   * Returns an empty string if the user doesn't have a nickname
+   */
+  public static String getNickname(String userId) {
+    CachedNickname cached = cache.get(userId);
+    if (cached == null || cached.isExpired()) {
+      cached = new CachedNickname(loadNickname(userId));
+      cache.put(userId, cached);
+    }
+    return cached.nickname;
+  }
+
+  /** 
+   * Method that returns the user entity to save for a nickname change
+   * Returns null if the nickname didn't change, so nothing has to be written
+   * The cache is only updated by onUserSaved, once the entity was saved
+   */
+  public static Entity createNicknameEntity(String userId, String nickname) {
+    if (nickname == null || nickname.equals(getNickname(userId))) {
+      return null;
+    }
+    return createUserEntity(userId, nickname);
+  }
+
+  /** 
+   * Method called after a user entity made by createNicknameEntity was saved
+   * Caches the saved nickname
+   */
+  public static void onUserSaved(Entity entity) {
+    cache.put((String) entity.getProperty("id"),
+        new CachedNickname((String) entity.getProperty("nickname")));
+  }
+
+  /** 
+   * Method that returns the datastore key of the user entity with id
+   */
+  public static Key createUserKey(String userId) {
+    return KeyFactory.createKey("User", userId);
+  }
+
+  /** 
+   * Method that loads the user's nickname from datastore
+   */
+  private static String loadNickname(String userId) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity entity;
+    try {
+      entity = datastore.get(createUserKey(userId));
+    } catch (EntityNotFoundException e) {
+      entity = migrateLegacyUser(datastore, userId);
+    }
+
+    // If the user doesn't have a nickname, return an empty string
+    String nickname = entity == null ? null : (String) entity.getProperty("nickname");
+    return nickname == null ? "" : nickname;
+  }
+
+  /** 
+   * Method that finds the user's entity with a generated id and saves it under the user id key
+   * Returns the entity that was found, or null if the user doesn't have one
+   * If saving fails, the old entity is kept and the move is tried again on the next load
+   */
+  private static Entity migrateLegacyUser(DatastoreService datastore, String userId) {
+    Query query = new Query("User")
+        .setFilter(new FilterPredicate("id", FilterOperator.EQUAL, userId));
+    List<Entity> legacyEntities = datastore.prepare(query).asList(FetchOptions.Builder.withLimit(1));
+    if (legacyEntities.isEmpty()) {
+      return null;
+    }
+
+    Entity legacyEntity = legacyEntities.get(0);
+    try {
+      datastore.put(createUserEntity(userId, (String) legacyEntity.getProperty("nickname")));
+      datastore.delete(legacyEntity.getKey());
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Could not move the User entity of " + userId, e);
+    }
+    return legacyEntity;
+  }
+
+  /** 
+   * Method that returns the user entity with id and nickname, under the user id key
+   */
+  private static Entity createUserEntity(String userId, String nickname) {
+    Entity entity = new Entity(createUserKey(userId));
+    entity.setProperty("id", userId);
+    entity.setProperty("nickname", nickname);
+    return entity;
+  }
+}
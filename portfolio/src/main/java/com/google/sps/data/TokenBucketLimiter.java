@@ -0,0 +1,134 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** 
+ * Class that limits how often each key (a user or an IP) may do something, using token buckets
+ *
+ * Buckets live in a fixed size table indexed by the key's hash, so memory stays bounded
+ * no matter how many keys are seen. Keys are not stored: colliding keys share the bucket,
+ * which errs on the side of limiting, and a full bucket is the same as a new one, so the slot
+ * is effectively free again once it has refilled. Buckets are immutable and replaced with
+ * compare-and-set, so no locks are taken.
+ */
+public final class TokenBucketLimiter {
+
+  private final double capacity;
+  private final double tokensPerNano;
+  private final AtomicReferenceArray<Bucket> slots;
+  private final LongAdder rejections = new LongAdder();
+
+  /** Class containing the tokens of a slot at a point in time */
+  private static final class Bucket {
+    private final double tokens;
+    private final long updatedNanos;
+
+    private Bucket(double tokens, long updatedNanos) {
+      this.tokens = tokens;
+      this.updatedNanos = updatedNanos;
+    }
+  }
+
+  /** 
+   * Creates a limiter allowing bursts of capacity actions per key,
+   * refilled with one token every refillMillis, tracking up to slotCount keys
+   */
+  public TokenBucketLimiter(int capacity, long refillMillis, int slotCount) {
+    this.capacity = capacity;
+    this.tokensPerNano = 1.0 / TimeUnit.MILLISECONDS.toNanos(refillMillis);
+    this.slots = new AtomicReferenceArray<>(slotCount);
+  }
+
+  /** 
+   * Method that takes a token from key's bucket
+   * Returns 0 if a token was taken, otherwise the milliseconds until one is available
+   */
+  public long tryAcquire(String key) {
+    int index = slotIndex(key);
+    while (true) {
+      long nowNanos = System.nanoTime();
+      Bucket current = slots.get(index);
+      double tokens = tokensAt(current, nowNanos);
+
+      if (tokens < 1) {
+        rejections.increment();
+        return millisUntilToken(tokens);
+      }
+
+      if (slots.compareAndSet(index, current, new Bucket(tokens - 1, nowNanos))) {
+        return 0;
+      }
+    }
+  }
+
+  /** 
+   * Method that checks if key's bucket has a token, without taking it
+   * Returns 0 if it has one, otherwise the milliseconds until one is available,
+   * which counts as a rejection
+   */
+  public long check(String key) {
+    double tokens = tokensAt(slots.get(slotIndex(key)), System.nanoTime());
+    if (tokens < 1) {
+      rejections.increment();
+      return millisUntilToken(tokens);
+    }
+    return 0;
+  }
+
+  /** 
+   * Method that gives back a token taken by tryAcquire, e.g. because another limit refused
+   * the action the token was taken for
+   */
+  public void release(String key) {
+    int index = slotIndex(key);
+    while (true) {
+      long nowNanos = System.nanoTime();
+      Bucket current = slots.get(index);
+      double tokens = Math.min(capacity, tokensAt(current, nowNanos) + 1);
+      if (slots.compareAndSet(index, current, new Bucket(tokens, nowNanos))) {
+        return;
+      }
+    }
+  }
+
+  private int slotIndex(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % slots.length();
+  }
+
+  /** 
+   * Method that returns the tokens in bucket refilled for the time passed since it was updated
+   */
+  private double tokensAt(Bucket bucket, long nowNanos) {
+    if (bucket == null) {
+      return capacity;
+    }
+    return Math.min(capacity, bucket.tokens + (nowNanos - bucket.updatedNanos) * tokensPerNano);
+  }
+
+  private long millisUntilToken(double tokens) {
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - tokens) / tokensPerNano)));
+  }
+
+  /** 
+   * Method that returns how many times tryAcquire or check refused a token
+   */
+  public long getRejections() {
+    return rejections.sum();
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.data.RequestMetrics.EndpointMetrics;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Filter that records the latency, in flight requests and errors of every servlet pattern
+ * The metrics are read from RequestMetrics, for example by MetricsServlet
+ * This filter, RequestMetrics and LatencyHistogram are the same in the server-stats example
+ * and in the portfolio, a change to one copy has to be made to the other
+ */
+@WebFilter("/*")
+public class MetricsFilter implements Filter {
+
+  // Pattern of the requests served by the default servlet, like static files
+  private static final String DEFAULT_PATTERN = "/";
+
+  // Comma separated patterns whose requests wait for events, their latency would only show the wait
+  private static final Set<String> LONG_POLL_PATTERNS =
+      new HashSet<>(Arrays.asList(System.getProperty("metrics.longPollPatterns", "").split(",")));
+
+  // Servlet mappings by kind, read once the application started
+  private final Set<String> exactPatterns = new HashSet<>();
+  private final Set<String> prefixPatterns = new HashSet<>();
+  private final Set<String> extensionPatterns = new HashSet<>();
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    for (ServletRegistration registration :
+        filterConfig.getServletContext().getServletRegistrations().values()) {
+      for (String pattern : registration.getMappings()) {
+        if (pattern.endsWith("/*")) {
+          prefixPatterns.add(pattern);
+        } else if (pattern.startsWith("*.")) {
+          extensionPatterns.add(pattern);
+        } else {
+          exactPatterns.add(pattern);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    String pattern = getPattern((HttpServletRequest) request);
+    EndpointMetrics metrics = RequestMetrics.forPattern(pattern);
+    metrics.started();
+    long startNanos = System.nanoTime();
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      failed = ((HttpServletResponse) response).getStatus() >= 500;
+    } finally {
+      if (LONG_POLL_PATTERNS.contains(pattern)) {
+        metrics.finished(failed);
+      } else {
+        metrics.finished((System.nanoTime() - startNanos) / 1000, failed);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {}
+
+  /** 
+   * Method that returns the servlet mapping that matched request
+   * HttpServletRequest.getHttpServletMapping() does the same, but needs a Servlet 4.0 container
+   */
+  private String getPattern(HttpServletRequest request) {
+    String servletPath = request.getServletPath();
+    if (request.getPathInfo() != null && prefixPatterns.contains(servletPath + "/*")) {
+      return servletPath + "/*";
+    }
+    if (exactPatterns.contains(servletPath)) {
+      return servletPath;
+    }
+    int dotIndex = servletPath.lastIndexOf('.');
+    if (dotIndex >= 0 && extensionPatterns.contains("*" + servletPath.substring(dotIndex))) {
+      return "*" + servletPath.substring(dotIndex);
+    }
+    return DEFAULT_PATTERN;
+  }
+}
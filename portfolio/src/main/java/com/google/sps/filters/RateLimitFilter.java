@@ -0,0 +1,110 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.data.Identity;
+import com.google.sps.data.TokenBucketLimiter;
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Filter that limits how often comments can be posted, per user and per IP
+ * Requests over the limit get a 429 response with a Retry-After header
+ */
+@WebFilter("/data")
+public class RateLimitFilter implements Filter {
+
+  // Status code for Too Many Requests, HttpServletResponse has no constant for it
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  // Number of keys each limiter tracks
+  private static final int LIMITER_SLOTS = 4096;
+
+  // A user can post 5 comments at once, then one every 10 seconds
+  private static final TokenBucketLimiter userLimiter =
+      new TokenBucketLimiter(5, 10 * 1000, LIMITER_SLOTS);
+
+  // An IP, possibly shared by several users, can post 20 comments at once, then one every 2 seconds
+  private static final TokenBucketLimiter ipLimiter =
+      new TokenBucketLimiter(20, 2 * 1000, LIMITER_SLOTS);
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    if (!"POST".equals(httpRequest.getMethod())) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    String ip = request.getRemoteAddr();
+    Identity identity = Identity.of(request);
+    String userId = identity.isLoggedIn() ? identity.getId() : null;
+
+    // Check both limits before taking a token, so a request one limit refuses costs nothing
+    long retryAfterMillis = ipLimiter.check(ip);
+    if (userId != null) {
+      retryAfterMillis = Math.max(retryAfterMillis, userLimiter.check(userId));
+    }
+
+    // Take the tokens, giving the IP's back if the user's ran out since the check
+    if (retryAfterMillis == 0) {
+      retryAfterMillis = ipLimiter.tryAcquire(ip);
+      if (retryAfterMillis == 0 && userId != null) {
+        retryAfterMillis = userLimiter.tryAcquire(userId);
+        if (retryAfterMillis > 0) {
+          ipLimiter.release(ip);
+        }
+      }
+    }
+
+    if (retryAfterMillis > 0) {
+      HttpServletResponse httpResponse = (HttpServletResponse) response;
+      httpResponse.setHeader("Retry-After", String.valueOf((retryAfterMillis + 999) / 1000));
+      httpResponse.sendError(SC_TOO_MANY_REQUESTS, "Too many comments, try again later");
+      return;
+    }
+
+    chain.doFilter(request, response);
+  }
+
+  @Override
+  public void destroy() {}
+
+  /** 
+   * Method that returns how many comment posts were rejected because of the user's limit
+   */
+  public static long getUserRejections() {
+    return userLimiter.getRejections();
+  }
+
+  /** 
+   * Method that returns how many comment posts were rejected because of the IP's limit
+   */
+  public static long getIpRejections() {
+    return ipLimiter.getRejections();
+  }
+}
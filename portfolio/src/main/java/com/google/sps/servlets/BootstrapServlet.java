@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Comment;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
+import com.google.sps.data.LanguageCatalog;
+import com.google.sps.data.User;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that returns everything the portfolio page needs when it loads */
+@WebServlet("/bootstrap")
+public class BootstrapServlet extends HttpServlet {
+
+  /**
+   * Method that handles the GET requests to "/bootstrap" path
+   * Parameters "max-comments" and "comments-language-code" work like for "/data"
+   * Returns a JSON object with the "user" (as "/user"), the "languages" (as "/languages")
+   * and the first page of "comments" (as "/data")
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Get the input from the request
+    int maxComments = DataServlet.parseMaxComments(request.getParameter("max-comments"));
+    String languageCode = request.getParameter("comments-language-code");
+    Identity identity = Identity.of(request);
+
+    // Save buffered comments first, so they are included in the response
+    DataServlet.flushBufferedEntities();
+
+    User user = UserServlet.loadCurrentUser(identity);
+    List<Comment> comments = DataServlet.loadNewestComments(maxComments, languageCode);
+    LanguageCatalog catalog = LanguageCatalog.forLocale(request.getLocale());
+
+    // Send everything as a single JSON object in the response
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Gson gson = Json.gson();
+    JsonWriter jsonWriter = Json.newJsonWriter(response.getOutputStream());
+    jsonWriter.beginObject();
+    jsonWriter.name("user");
+    gson.toJson(user, user.getClass(), jsonWriter);
+    jsonWriter.name("languages");
+    gson.toJson(catalog.getLanguages(), List.class, jsonWriter);
+    jsonWriter.name("comments");
+    gson.toJson(comments, List.class, jsonWriter);
+    jsonWriter.endObject();
+    jsonWriter.flush();
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.CommentEventBuffer;
+import com.google.sps.data.CommentEventBuffer.CommentEvent;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Servlet that pushes comment additions and removals as server-sent events
+ * App Engine sends the response only when it is complete, so the stream ends after
+ * the first events are sent and the browser's EventSource reconnects with Last-Event-ID
+ * The events are shared in memcache, so the client can reconnect to any instance
+ * Every waiting stream holds a request thread, so only MAX_OPEN_STREAMS wait at once and
+ * the others get the events available now and reconnect later
+ */
+@WebServlet("/comment-events")
+public class CommentEventsServlet extends HttpServlet {
+
+  // How long a request waits for new events before ending the stream
+  private static final long WAIT_MILLIS = 20 * 1000;
+
+  // How long the browser waits before reconnecting
+  private static final int RETRY_MILLIS = 1000;
+
+  // How many streams can wait for events at once on an instance
+  private static final int MAX_OPEN_STREAMS = Integer.getInteger("commentEvents.maxOpenStreams", 32);
+
+  // How long the browser waits before reconnecting when there were too many open streams
+  private static final int BUSY_RETRY_MILLIS = 10 * 1000;
+
+  private final AtomicInteger openStreams = new AtomicInteger();
+
+  /**
+   * Method that handles the GET requests to "/comment-events" path
+   * Resumes after the event in the Last-Event-ID header, or starts with the next event
+   * Sends "added" events with a comment, "removed" events with a comment id,
+   * and a "reset" event when the client missed events, so it has to fetch the newest comments
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    CommentEventBuffer eventBuffer = CommentEventBuffer.getInstance();
+
+    // Find the last event the client saw
+    String lastEventIdHeader = request.getHeader("Last-Event-ID");
+    long lastSequence = lastEventIdHeader != null
+        ? eventBuffer.sequenceOf(lastEventIdHeader)
+        : eventBuffer.getLastSequence();
+
+    // Wait for new events if there is a free stream, otherwise take the events there are now
+    List<CommentEvent> events;
+    int retryMillis;
+    if (openStreams.incrementAndGet() <= MAX_OPEN_STREAMS) {
+      retryMillis = RETRY_MILLIS;
+      try {
+        events = eventBuffer.awaitEventsAfter(lastSequence, WAIT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        openStreams.decrementAndGet();
+      }
+    } else {
+      openStreams.decrementAndGet();
+      retryMillis = BUSY_RETRY_MILLIS;
+      events = eventBuffer.eventsAfter(lastSequence);
+    }
+
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("text/event-stream");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter writer = response.getWriter();
+    writer.print("retry: " + retryMillis + "\n\n");
+
+    if (events == null) {
+      // The client missed events, tell it to fetch the comments and continue from the latest event
+      writer.print("id: " + eventBuffer.toEventId(eventBuffer.getLastSequence())
+          + "\nevent: reset\ndata: {}\n\n");
+    } else if (events.isEmpty()) {
+      // Nothing happened, keep the client's position
+      writer.print("id: " + eventBuffer.toEventId(lastSequence) + "\n\n");
+    } else {
+      for (CommentEvent event : events) {
+        writer.print("id: " + eventBuffer.toEventId(event.getSequence()) + "\nevent: " + event.getType()
+            + "\ndata: " + event.getData() + "\n\n");
+      }
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,183 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentSearchIndex;
+import com.google.sps.data.Json;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Servlet that searches the comments' text and authors
+ * The index is built by the searches themselves: each search scans comments into it for
+ * at most SCAN_BUDGET_MILLIS, continuing where the previous one stopped, so no request reads
+ * the whole corpus. Until the first scan ends, results come from the comments scanned so far.
+ * A new scan starts INDEX_REFRESH_MILLIS after the last one ended and drops the comments
+ * that were deleted on other instances. Results are also checked against datastore,
+ * so a comment deleted elsewhere is never returned.
+ */
+@WebServlet("/comments/search")
+public class CommentSearchServlet extends HttpServlet {
+
+  // Number of results returned when "max-results" is missing
+  private static final int DEFAULT_MAX_RESULTS = 20;
+
+  // Maximum results that can be requested
+  private static final int RESULTS_REQUEST_LIMIT = 100;
+
+  // Number of comments fetched from datastore at once while building the index
+  private static final int INDEX_CHUNK_SIZE = 500;
+
+  // Longest time a search spends scanning comments into the index
+  private static final long SCAN_BUDGET_MILLIS = 500;
+
+  // How long after a complete scan the next one starts
+  private static final long INDEX_REFRESH_MILLIS = 10 * 60 * 1000;
+
+  private static final Logger logger = Logger.getLogger(CommentSearchServlet.class.getName());
+
+  // Held by the search that is scanning, the others search what is already indexed
+  private final ReentrantLock scanLock = new ReentrantLock();
+
+  // Where the current scan continues, null for the first chunk
+  private Cursor scanCursor = null;
+  private boolean scanning = false;
+
+  // When the last complete scan ended, 0 before the first one
+  private long lastScanEndMillis = 0;
+
+  /**
+   * Method that handles the GET requests to "/comments/search" path
+   * Parameter "q" is the text to search, comments must contain all its words
+   * Parameter "max-results" specifies the maximum number of comments to return
+   * Returns a JSON array of comments, the best matches first
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Get the input from the request
+    String query = request.getParameter("q");
+    int maxResults;
+    try {
+      maxResults = Math.min(Integer.parseInt(request.getParameter("max-results")), RESULTS_REQUEST_LIMIT);
+    } catch (NumberFormatException e) {
+      maxResults = DEFAULT_MAX_RESULTS;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    continueScan(datastore);
+    List<Comment> comments = CommentSearchIndex.getInstance().search(query, maxResults);
+    comments = dropDeletedComments(datastore, comments);
+
+    // Send the JSON as the response
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Json.write(comments, response.getOutputStream());
+  }
+
+  /**
+   * Method that scans comments into the index for at most SCAN_BUDGET_MILLIS
+   * Starts a new scan if none is running and the last one is older than INDEX_REFRESH_MILLIS
+   * Comments added meanwhile are already indexed and skipped, comments removed
+   * meanwhile are remembered by the index so the scan doesn't add them back
+   */
+  private void continueScan(DatastoreService datastore) {
+    if (!scanLock.tryLock()) {
+      return;
+    }
+    try {
+      long startMillis = System.currentTimeMillis();
+      CommentSearchIndex index = CommentSearchIndex.getInstance();
+      if (!scanning) {
+        if (lastScanEndMillis > 0 && startMillis - lastScanEndMillis < INDEX_REFRESH_MILLIS) {
+          return;
+        }
+        index.startLoading();
+        scanning = true;
+        scanCursor = null;
+      }
+
+      Query query = new Query("Comment").addSort("addedDate", SortDirection.ASCENDING);
+      do {
+        FetchOptions fetchOptions = FetchOptions.Builder.withLimit(INDEX_CHUNK_SIZE);
+        if (scanCursor != null) {
+          fetchOptions.startCursor(scanCursor);
+        }
+        QueryResultList<Entity> chunk = datastore.prepare(query).asQueryResultList(fetchOptions);
+        for (Entity entity : chunk) {
+          index.addLoaded(DataServlet.createComment(entity, null));
+        }
+        scanCursor = chunk.getCursor();
+
+        if (chunk.size() < INDEX_CHUNK_SIZE) {
+          index.finishLoading();
+          scanning = false;
+          lastScanEndMillis = System.currentTimeMillis();
+          return;
+        }
+      } while (System.currentTimeMillis() - startMillis < SCAN_BUDGET_MILLIS);
+    } catch (RuntimeException e) {
+      // Keep the cursor, the next search retries the chunk
+      logger.log(Level.WARNING, "Could not scan comments into the search index", e);
+    } finally {
+      scanLock.unlock();
+    }
+  }
+
+  /**
+   * Method that returns the comments that still exist in datastore, in the same order
+   * The others were deleted on another instance and are removed from the index
+   */
+  private static List<Comment> dropDeletedComments(
+      DatastoreService datastore, List<Comment> comments) {
+    if (comments.isEmpty()) {
+      return comments;
+    }
+    List<Key> keys = new ArrayList<>();
+    for (Comment comment : comments) {
+      keys.add(KeyFactory.createKey("Comment", comment.getId()));
+    }
+    Map<Key, Entity> existingEntities = datastore.get(keys);
+
+    List<Comment> existingComments = new ArrayList<>();
+    for (int i = 0; i < comments.size(); i++) {
+      if (existingEntities.containsKey(keys.get(i))) {
+        existingComments.add(comments.get(i));
+      } else {
+        CommentSearchIndex.getInstance().remove(comments.get(i).getId());
+      }
+    }
+    return existingComments;
+  }
+}
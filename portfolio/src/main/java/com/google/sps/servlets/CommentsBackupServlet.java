@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.gson.JsonObject;
+import com.google.sps.data.CommentArchive;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Servlet that exports and imports all the comments, for admins only
+ * App Engine limits requests and responses to 32 MB and 60 seconds, so exports come in pages
+ * and bigger archives have to be imported in several requests
+ */
+@WebServlet("/comments/backup")
+public class CommentsBackupServlet extends HttpServlet {
+
+  // Number of comments in an exported page, kept small because the page is buffered in memory
+  private static final int EXPORT_PAGE_SIZE = 2000;
+
+  /**
+   * Method that handles the GET requests to "/comments/backup" path
+   * Parameter "cursor" continues the export after a previous page
+   * Returns a page of comments as a gzipped NDJSON file, and the cursor of the next page
+   * in the X-Next-Cursor header if there may be more comments
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Make sure the user exporting comments is an admin
+    if (!Identity.of(request).isAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    // Write the page to a buffer first, so the next cursor can go in a header
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    ByteArrayOutputStream page = new ByteArrayOutputStream();
+    String nextCursor;
+    try {
+      nextCursor = CommentArchive.exportComments(
+          datastore, page, request.getParameter("cursor"), EXPORT_PAGE_SIZE);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+      return;
+    }
+
+    // Send the file as a download, not as gzip content encoding, so it stays compressed
+    if (nextCursor != null) {
+      response.setHeader("X-Next-Cursor", nextCursor);
+    }
+    response.setContentType("application/gzip");
+    response.setHeader("Content-Disposition", "attachment; filename=\"comments.ndjson.gz\"");
+    page.writeTo(response.getOutputStream());
+  }
+
+  /**
+   * Method that handles the POST requests to "/comments/backup" path
+   * The request body is one or more concatenated pages returned by GET, gzipped or not,
+   * up to App Engine's 32 MB request limit
+   * The whole body is checked first, and nothing is imported if any line is malformed
+   * Comments with the same ids are overwritten
+   * Returns a JSON object with the number of imported comments, how many of them
+   * overwrote existing ones, and how many have ids datastore may already have given out
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Make sure the user importing comments is an admin
+    if (!Identity.of(request).isAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    // Read the whole body and check it before saving anything, so a malformed line
+    // doesn't leave the archive half imported
+    byte[] body = readBody(request);
+    try {
+      CommentArchive.countComments(new ByteArrayInputStream(body));
+    } catch (IOException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed comments file");
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    CommentArchive.ImportResult result = CommentArchive.importComments(
+        datastore, new ByteArrayInputStream(body), DataServlet::onCommentsImported);
+
+    // Send the numbers of imported, overwritten and contended comments as the response
+    JsonObject json = new JsonObject();
+    json.addProperty("importedComments", result.getImportedComments());
+    json.addProperty("overwrittenComments", result.getOverwrittenComments());
+    json.addProperty("contendedComments", result.getContendedComments());
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Json.write(json, response.getOutputStream());
+  }
+
+  /**
+   * Method that reads the whole request body
+   */
+  private static byte[] readBody(HttpServletRequest request) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    try (InputStream inputStream = request.getInputStream()) {
+      while ((read = inputStream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
@@ -21,9 +23,11 @@ import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.appengine.api.datastore.Query.SortDirection;
-import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.cloud.translate.Translate;
 import com.google.cloud.translate.TranslateOptions;
@@ -32,12 +36,25 @@ import com.google.cloud.language.v1.Document;
 import com.google.cloud.language.v1.LanguageServiceClient;
 import com.google.cloud.language.v1.Sentiment;
 import com.google.sps.data.Comment;
-import com.google.gson.Gson;
+import com.google.sps.data.CommentEventBuffer;
+import com.google.sps.data.CommentSearchIndex;
+import com.google.sps.data.CommentsFragmentCache;
+import com.google.sps.data.EntityWriteBuffer;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
+import com.google.sps.data.LanguageCatalog;
+import com.google.sps.data.NicknameStore;
+import com.google.gson.stream.JsonWriter;
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Locale;
+import java.util.List;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -50,73 +67,186 @@ public class DataServlet extends HttpServlet {
   // Maximum comments that can be requested
   private static final int COMMENTS_REQUEST_LIMIT = 10000;
 
+  // Number of comments written between two flushes of the response
+  private static final int COMMENTS_FLUSH_INTERVAL = 50;
+
+  // Maximum comments read by a request that filters date sorted comments by sentiment
+  private static final int SENTIMENT_SCAN_LIMIT = 1000;
+
+  // Values of the "sort" parameter
+  private static final String SORT_OLDEST = "oldest";
+  private static final String SORT_POSITIVE = "positive";
+  private static final String SORT_NEGATIVE = "negative";
+
+  // Write-behind settings, by default every comment is written through immediately
+  private static final int WRITE_BATCH_SIZE = Integer.getInteger("comments.writeBatchSize", 1);
+  private static final long WRITE_DELAY_MILLIS = Long.getLong("comments.writeDelayMillis", 0L);
+
+  // Shortest period of the timer flushing the write buffer
+  private static final long MIN_FLUSH_PERIOD_MILLIS = 100;
+
+  private static final Logger logger = Logger.getLogger(DataServlet.class.getName());
+
+  // Buffer that saves comment and user entities in batched puts
+  // Static so other servlets reading comments can flush it, null until init() runs
+  private static volatile EntityWriteBuffer writeBuffer;
+
+  // Timer saving buffered entities that waited long enough, null when writing through
+  private ScheduledExecutorService flushScheduler;
+
+  @Override
+  public void init() {
+    int writeBatchSize = WRITE_BATCH_SIZE;
+    if (writeBatchSize > 1) {
+      writeBatchSize = startFlushScheduler() ? writeBatchSize : 1;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    writeBuffer = new EntityWriteBuffer(
+        datastore, writeBatchSize, WRITE_DELAY_MILLIS, DataServlet::onEntitiesSaved);
+  }
+
+  @Override
+  public void destroy() {
+    if (flushScheduler != null) {
+      flushScheduler.shutdownNow();
+    }
+    // Save the comments that are still buffered before the servlet goes away
+    writeBuffer.flush();
+  }
+
+  /** 
+   * Method that starts the background timer flushing the write buffer
+   * Background threads need manual or basic scaling. Without them a buffered comment
+   * would wait for the next request, and destroy() is not guaranteed to run,
+   * so comments are written through instead
+   * Returns whether the timer started
+   */
+  private boolean startFlushScheduler() {
+    long periodMillis = Math.max(WRITE_DELAY_MILLIS, MIN_FLUSH_PERIOD_MILLIS);
+    flushScheduler =
+        Executors.newSingleThreadScheduledExecutor(ThreadManager.backgroundThreadFactory());
+    try {
+      flushScheduler.scheduleWithFixedDelay(
+          this::flushDueEntities, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "No background threads, comments are written through", e);
+      flushScheduler.shutdownNow();
+      flushScheduler = null;
+      return false;
+    }
+  }
+
+  /** 
+   * Method run by the flush timer, failures are logged so the timer keeps running
+   */
+  private void flushDueEntities() {
+    try {
+      writeBuffer.flushIfDue();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Could not save buffered comments, retrying later", e);
+    }
+  }
+
   /** 
    * Method that handles the GET requests to "/data" path
    * Parameter "max-comments" specifies the maximum number of comments to return
-   * Returns a JSON array of comments ordered by addedDate descending
+   * Parameters "min-sentiment" and "max-sentiment" only return comments with
+   * a sentimentScore in that inclusive range
+   * Parameter "sort" is one of "newest" (default), "oldest", "positive" or "negative"
+   * Returns a JSON array of comments in the requested order
+   * Sorted by date, sentiment filters look at SENTIMENT_SCAN_LIMIT comments at most, and if
+   * there may be more the X-Next-Cursor header has a cursor for the "cursor" parameter
+   * of the next request
    */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Get the input from the request
-    String maxCommentsString = request.getParameter("max-comments");
+    int maxComments = parseMaxComments(request.getParameter("max-comments"));
     String languageCode = request.getParameter("comments-language-code");
+    Double minSentiment = parseSentiment(request.getParameter("min-sentiment"));
+    Double maxSentiment = parseSentiment(request.getParameter("max-sentiment"));
+    String sort = request.getParameter("sort");
 
-    // Convert the input to an int or Integer.MAX_VALUE
-    int maxComments;
-    try {
-      maxComments = Integer.parseInt(maxCommentsString);
-    } catch (NumberFormatException e) {
-      maxComments = Integer.MAX_VALUE;
-    }
-
-    // If the request exceeds the comments limit, bring it down
-    if(maxComments > COMMENTS_REQUEST_LIMIT) {
-        maxComments = COMMENTS_REQUEST_LIMIT;
-    }
+    // Save buffered comments first, so they are included in the response
+    writeBuffer.flush();
 
-    // Make sure maxComments is not negative
-    if(maxComments < 0) {
-        maxComments = 0;
-    }
+    // Datastore only allows an inequality filter on the property sorted first,
+    // so sentiment filters are applied by datastore when sorting by sentiment,
+    // and to a capped page of the date ordered results otherwise
+    boolean sortBySentiment = SORT_POSITIVE.equals(sort) || SORT_NEGATIVE.equals(sort);
+    boolean hasSentimentFilter = minSentiment != null || maxSentiment != null;
+    boolean filterSentimentInMemory = hasSentimentFilter && !sortBySentiment;
 
     // Load comments from datastore
-    Query query = new Query("Comment").addSort("addedDate", SortDirection.DESCENDING);
+    Query query = new Query("Comment");
+    if(sortBySentiment) {
+      SortDirection direction =
+          SORT_POSITIVE.equals(sort) ? SortDirection.DESCENDING : SortDirection.ASCENDING;
+      query.addSort("sentimentScore", direction);
+      if(minSentiment != null && maxSentiment != null) {
+        query.setFilter(CompositeFilterOperator.and(
+            new FilterPredicate("sentimentScore", FilterOperator.GREATER_THAN_OR_EQUAL, minSentiment),
+            new FilterPredicate("sentimentScore", FilterOperator.LESS_THAN_OR_EQUAL, maxSentiment)));
+      } else if(minSentiment != null) {
+        query.setFilter(
+            new FilterPredicate("sentimentScore", FilterOperator.GREATER_THAN_OR_EQUAL, minSentiment));
+      } else if(maxSentiment != null) {
+        query.setFilter(
+            new FilterPredicate("sentimentScore", FilterOperator.LESS_THAN_OR_EQUAL, maxSentiment));
+      }
+    }
+    SortDirection dateDirection =
+        SORT_OLDEST.equals(sort) ? SortDirection.ASCENDING : SortDirection.DESCENDING;
+    query.addSort("addedDate", dateDirection);
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     PreparedQuery results = datastore.prepare(query);
 
-    // Store comments in an array
-    ArrayList<Comment> comments = new ArrayList<>();
-    for (Entity entity : results.asIterable(FetchOptions.Builder.withLimit(maxComments))) {
-      long id = entity.getKey().getId();
-      String message = (String) entity.getProperty("message");
-      String addedBy = (String) entity.getProperty("addedBy");
-      String email = (String) entity.getProperty("email");
-      Date addedDate = (Date) entity.getProperty("addedDate");
-      Double sentimentScore = (Double) entity.getProperty("sentimentScore");
-
-      // Get the supported language codes in an array
-      String[] languageCodes = Locale.getISOLanguages();
-
-      // If a languageCode was specified and it is supported, 
-      // translate the comments' message in that language
-      if(languageCode != null && Arrays.asList(languageCodes).contains(languageCode)) {
-        Translate translate = TranslateOptions.getDefaultInstance().getService();
-        Translation translation =
-            translate.translate(message, Translate.TranslateOption.targetLanguage(languageCode));
-        message = translation.getTranslatedText();
+    Iterable<Entity> entities;
+    if(filterSentimentInMemory) {
+      Cursor startCursor;
+      try {
+        String cursorString = request.getParameter("cursor");
+        startCursor = cursorString != null ? Cursor.fromWebSafeString(cursorString) : null;
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+        return;
       }
-
-      comments.add(new Comment(id, message, addedBy, email, addedDate, sentimentScore));
+      List<Entity> matchingEntities = new ArrayList<>();
+      String nextCursor = scanSentimentRange(
+          results, startCursor, minSentiment, maxSentiment, maxComments, matchingEntities);
+      if(nextCursor != null) {
+        response.setHeader("X-Next-Cursor", nextCursor);
+      }
+      entities = matchingEntities;
+    } else {
+      entities = results.asIterable(FetchOptions.Builder.withLimit(maxComments));
     }
 
-    // Convert the comments to JSON
-    Gson gson = new Gson();
-    String json = gson.toJson(comments);
-
-    // Send the JSON as the response
+    // Prepare the response for streaming the comments as a JSON array
     response.setCharacterEncoding("UTF-8");
     response.setContentType("application/json;");
-    response.getWriter().println(json);
+    JsonWriter jsonWriter = Json.newJsonWriter(response.getOutputStream());
+    jsonWriter.beginArray();
+
+    // Write each comment to the response as soon as its entity is fetched,
+    // so memory doesn't grow with the number of comments
+    int writtenComments = 0;
+    String translationLanguageCode = LanguageCatalog.isSupported(languageCode) ? languageCode : null;
+    for (Entity entity : entities) {
+      Comment comment = createComment(entity, translationLanguageCode);
+      Json.gson().toJson(comment, Comment.class, jsonWriter);
+
+      // Periodically flush so the client receives the first comments early
+      writtenComments++;
+      if(writtenComments % COMMENTS_FLUSH_INTERVAL == 0) {
+        jsonWriter.flush();
+      }
+    }
+
+    jsonWriter.endArray();
+    jsonWriter.flush();
   }
 
   /** 
@@ -128,8 +258,8 @@ public class DataServlet extends HttpServlet {
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Make sure user is logged in before adding the comment
-    UserService userService = UserServiceFactory.getUserService();
-    if (userService.isUserLoggedIn()) {
+    Identity identity = Identity.of(request);
+    if (identity.isLoggedIn()) {
         // Get the input from the request
         String message = request.getParameter("comment-message");
         String addedBy = request.getParameter("comment-addedBy");
@@ -138,31 +268,20 @@ public class DataServlet extends HttpServlet {
         Entity commentEntity = new Entity("Comment");
         commentEntity.setProperty("message", message);
         commentEntity.setProperty("addedBy", addedBy);
-        commentEntity.setProperty("email", userService.getCurrentUser().getEmail());
+        commentEntity.setProperty("email", identity.getEmail());
         commentEntity.setProperty("addedDate", new Date());
         commentEntity.setProperty("sentimentScore", getSentimentScore(message));
 
-        // Save commentEntity in datastore
-        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-        datastore.put(commentEntity);
-
-        // Make a query to get the user entity with corresponding id from the datastore
-        String userId = userService.getCurrentUser().getUserId();
-        Query query =
-        new Query("User")
-            .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, userId));
-        PreparedQuery results = datastore.prepare(query);
-        Entity entity = results.asSingleEntity();
-
-        // If the user is not in datastore, create a new entity
-        if(entity == null) {
-            entity = new Entity("User");
-            entity.setProperty("id", userId);
+        // Collect the entities to save: the comment and the user, if the nickname changed
+        List<Entity> entities = new ArrayList<>();
+        entities.add(commentEntity);
+        Entity userEntity = NicknameStore.createNicknameEntity(identity.getId(), addedBy);
+        if(userEntity != null) {
+            entities.add(userEntity);
         }
 
-        // Update user's nickname
-        entity.setProperty("nickname", addedBy);
-        datastore.put(entity);
+        // Save the entities in datastore in one batch
+        writeBuffer.add(entities);
     }
 
     response.sendRedirect("/index.html");
@@ -176,8 +295,7 @@ public class DataServlet extends HttpServlet {
   @Override
   public void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Make sure the user deleting comments is an admin
-    UserService userService = UserServiceFactory.getUserService();
-    if(!userService.isUserAdmin()) {
+    if(!Identity.of(request).isAdmin()) {
       return;
     }
     // Get the input from the request
@@ -195,6 +313,182 @@ public class DataServlet extends HttpServlet {
     Key commentEntityKey = KeyFactory.createKey("Comment", id);
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     datastore.delete(commentEntityKey);
+    onCommentsDeleted(Arrays.asList(commentEntityKey));
+  }
+
+  /**
+   * Method that converts the "max-comments" parameter to an int in [0, COMMENTS_REQUEST_LIMIT]
+   * A missing or invalid parameter means as many comments as allowed
+   */
+  static int parseMaxComments(String maxCommentsString) {
+    // Convert the input to an int or Integer.MAX_VALUE
+    int maxComments;
+    try {
+      maxComments = Integer.parseInt(maxCommentsString);
+    } catch (NumberFormatException e) {
+      maxComments = Integer.MAX_VALUE;
+    }
+
+    // If the request exceeds the comments limit, bring it down
+    if(maxComments > COMMENTS_REQUEST_LIMIT) {
+        maxComments = COMMENTS_REQUEST_LIMIT;
+    }
+
+    // Make sure maxComments is not negative
+    if(maxComments < 0) {
+        maxComments = 0;
+    }
+
+    return maxComments;
+  }
+
+  /**
+   * Method that saves the buffered comments and users, so a following read includes them
+   */
+  static void flushBufferedEntities() {
+    EntityWriteBuffer buffer = writeBuffer;
+    if (buffer != null) {
+      buffer.flush();
+    }
+  }
+
+  /**
+   * Method that loads the newest maxComments comments from datastore
+   * If languageCode is supported, the comments' messages are translated in that language
+   */
+  static List<Comment> loadNewestComments(int maxComments, String languageCode) {
+    Query query = new Query("Comment").addSort("addedDate", SortDirection.DESCENDING);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    PreparedQuery results = datastore.prepare(query);
+
+    String translationLanguageCode = LanguageCatalog.isSupported(languageCode) ? languageCode : null;
+    List<Comment> comments = new ArrayList<>();
+    for (Entity entity : results.asIterable(FetchOptions.Builder.withLimit(maxComments))) {
+      comments.add(createComment(entity, translationLanguageCode));
+    }
+    return comments;
+  }
+
+  /**
+   * Method that creates a Comment from its datastore entity
+   * If languageCode is not null, the comment's message is translated in that language
+   */
+  static Comment createComment(Entity entity, String languageCode) {
+    long id = entity.getKey().getId();
+    String message = (String) entity.getProperty("message");
+    String addedBy = (String) entity.getProperty("addedBy");
+    String email = (String) entity.getProperty("email");
+    Date addedDate = (Date) entity.getProperty("addedDate");
+    Double sentimentScore = (Double) entity.getProperty("sentimentScore");
+
+    if(languageCode != null) {
+      Translate translate = TranslateOptions.getDefaultInstance().getService();
+      Translation translation =
+          translate.translate(message, Translate.TranslateOption.targetLanguage(languageCode));
+      message = translation.getTranslatedText();
+    }
+
+    return new Comment(id, message, addedBy, email, addedDate, sentimentScore);
+  }
+
+  /**
+   * Method called after the write buffer saved a batch of entities
+   * Drops the cached rendered comments, publishes the new comments to live viewers
+   * and adds them to the search index, and caches the new nicknames
+   */
+  private static void onEntitiesSaved(List<Entity> batch) {
+    CommentsFragmentCache.invalidate();
+    for (Entity entity : batch) {
+      if(entity.getKind().equals("User")) {
+        NicknameStore.onUserSaved(entity);
+      } else if(entity.getKind().equals("Comment")) {
+        Comment comment = createComment(entity, null);
+        CommentEventBuffer.getInstance().publishAdded(comment);
+        CommentSearchIndex.getInstance().add(comment);
+      }
+    }
+  }
+
+  /**
+   * Method called after a chunk of comments was imported
+   * Drops the cached rendered comments and indexes the comments, replacing the index entries
+   * of the comments they overwrote
+   * Live viewers are not notified, an import can hold many old comments
+   */
+  static void onCommentsImported(List<Entity> chunk) {
+    CommentsFragmentCache.invalidate();
+    for (Entity entity : chunk) {
+      CommentSearchIndex.getInstance().replace(createComment(entity, null));
+    }
+  }
+
+  /**
+   * Method called after comments were deleted from datastore
+   * Drops the cached rendered comments, publishes the removals to live viewers
+   * and removes the comments from the search index
+   */
+  static void onCommentsDeleted(List<Key> keys) {
+    CommentsFragmentCache.invalidate();
+    for (Key key : keys) {
+      CommentEventBuffer.getInstance().publishRemoved(key.getId());
+      CommentSearchIndex.getInstance().remove(key.getId());
+    }
+  }
+
+  /**
+   * Method that converts a sentiment parameter to a Double
+   * Returns null if the parameter is missing or not a finite number
+   */
+  private static Double parseSentiment(String sentimentString) {
+    if(sentimentString == null) {
+      return null;
+    }
+    try {
+      double sentiment = Double.parseDouble(sentimentString);
+      return Double.isFinite(sentiment) ? sentiment : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method that reads date ordered results from startCursor, or from the start if it is null,
+   * and adds the entities with a sentimentScore in [min, max] to matchingEntities
+   * Stops after maxComments matches or SENTIMENT_SCAN_LIMIT read entities
+   * Returns the cursor after the last read entity if there may be more, or null
+   */
+  private static String scanSentimentRange(PreparedQuery results, Cursor startCursor,
+      Double min, Double max, int maxComments, List<Entity> matchingEntities) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(SENTIMENT_SCAN_LIMIT)
+        .chunkSize(COMMENTS_FLUSH_INTERVAL);
+    if(startCursor != null) {
+      fetchOptions.startCursor(startCursor);
+    }
+
+    QueryResultIterator<Entity> iterator = results.asQueryResultIterator(fetchOptions);
+    int scannedEntities = 0;
+    while(matchingEntities.size() < maxComments && iterator.hasNext()) {
+      Entity entity = iterator.next();
+      scannedEntities++;
+      if(isInRange((Double) entity.getProperty("sentimentScore"), min, max)) {
+        matchingEntities.add(entity);
+      }
+    }
+
+    boolean mayHaveMore =
+        matchingEntities.size() >= maxComments || scannedEntities == SENTIMENT_SCAN_LIMIT;
+    return mayHaveMore ? iterator.getCursor().toWebSafeString() : null;
+  }
+
+  /**
+   * Method that checks if sentimentScore is in the inclusive range [min, max]
+   * A null bound means the range is open on that side
+   */
+  private static boolean isInRange(Double sentimentScore, Double min, Double max) {
+    if(sentimentScore == null) {
+      return false;
+    }
+    return (min == null || sentimentScore >= min) && (max == null || sentimentScore <= max);
   }
 
   /**
@@ -0,0 +1,220 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.Filter;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.gson.JsonObject;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that deletes many comments at once */
+@WebServlet("/delete-comments")
+public class DeleteCommentsServlet extends HttpServlet {
+
+  // Maximum number of keys deleted by a single datastore call
+  private static final int DELETE_BATCH_SIZE = 500;
+
+  /**
+   * Method that handles the POST requests to "/delete-comments" path
+   * Parameter "comment-ids" is a comma separated list of comment ids to delete
+   * Otherwise the comments matching all the given filters are deleted:
+   * "email" of the author, "added-after" and "added-before" as milliseconds since epoch
+   * and "max-sentiment" for comments with a sentimentScore below that value
+   * Returns a JSON object with the number of deleted comments
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Make sure the user deleting comments is an admin
+    if (!Identity.of(request).isAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    // Get the input from the request
+    String idsString = request.getParameter("comment-ids");
+    String email = request.getParameter("email");
+    Date addedAfter = parseDate(request.getParameter("added-after"));
+    Date addedBefore = parseDate(request.getParameter("added-before"));
+    Double maxSentiment = parseDouble(request.getParameter("max-sentiment"));
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    int deletedComments;
+    if (idsString != null) {
+      deletedComments = deleteByIds(datastore, idsString);
+    } else if (email != null || addedAfter != null || addedBefore != null || maxSentiment != null) {
+      deletedComments = deleteByFilter(datastore, email, addedAfter, addedBefore, maxSentiment);
+    } else {
+      // Refuse to delete every comment when no filter was given
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No comments were selected");
+      return;
+    }
+
+    // Send the number of deleted comments as the response
+    JsonObject json = new JsonObject();
+    json.addProperty("deletedComments", deletedComments);
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Json.write(json, response.getOutputStream());
+  }
+
+  /**
+   * Method that deletes the comments with the ids in a comma separated list
+   * Ids that are not numbers or have no comment are skipped
+   * Returns the number of deleted comments
+   */
+  private static int deleteByIds(DatastoreService datastore, String idsString) {
+    List<Key> keys = new ArrayList<>();
+    int deletedComments = 0;
+    for (String idString : idsString.split(",")) {
+      try {
+        keys.add(KeyFactory.createKey("Comment", Long.parseLong(idString.trim())));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+
+      if (keys.size() == DELETE_BATCH_SIZE) {
+        deletedComments += deleteExistingBatch(datastore, keys);
+      }
+    }
+    deletedComments += deleteExistingBatch(datastore, keys);
+    return deletedComments;
+  }
+
+  /**
+   * Method that deletes the keys that have a comment, with one get and one delete call
+   * Clears the list and returns the number of deleted comments
+   */
+  private static int deleteExistingBatch(DatastoreService datastore, List<Key> keys) {
+    if (!keys.isEmpty()) {
+      keys.retainAll(datastore.get(keys).keySet());
+    }
+    return deleteBatch(datastore, keys);
+  }
+
+  /**
+   * Method that deletes the comments matching all the non null filters
+   * Uses a keys only query, unless both a date range and a sentiment filter are given,
+   * because datastore allows inequality filters on a single property only
+   * Returns the number of deleted comments
+   */
+  private static int deleteByFilter(DatastoreService datastore, String email,
+      Date addedAfter, Date addedBefore, Double maxSentiment) {
+    // Build the datastore filters
+    List<Filter> filters = new ArrayList<>();
+    if (email != null) {
+      filters.add(new FilterPredicate("email", FilterOperator.EQUAL, email));
+    }
+    if (addedAfter != null) {
+      filters.add(new FilterPredicate("addedDate", FilterOperator.GREATER_THAN_OR_EQUAL, addedAfter));
+    }
+    if (addedBefore != null) {
+      filters.add(new FilterPredicate("addedDate", FilterOperator.LESS_THAN, addedBefore));
+    }
+    boolean hasDateFilter = addedAfter != null || addedBefore != null;
+    boolean filterSentimentInMemory = maxSentiment != null && hasDateFilter;
+    if (maxSentiment != null && !filterSentimentInMemory) {
+      filters.add(new FilterPredicate("sentimentScore", FilterOperator.LESS_THAN, maxSentiment));
+    }
+
+    Query query = new Query("Comment");
+    if (filters.size() == 1) {
+      query.setFilter(filters.get(0));
+    } else if (filters.size() > 1) {
+      query.setFilter(CompositeFilterOperator.and(filters));
+    }
+    if (!filterSentimentInMemory) {
+      query.setKeysOnly();
+    }
+
+    // Delete the matching comments in batches while iterating the results
+    List<Key> keys = new ArrayList<>();
+    int deletedComments = 0;
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(DELETE_BATCH_SIZE);
+    for (Entity entity : datastore.prepare(query).asIterable(fetchOptions)) {
+      if (filterSentimentInMemory) {
+        Double sentimentScore = (Double) entity.getProperty("sentimentScore");
+        if (sentimentScore == null || sentimentScore >= maxSentiment) {
+          continue;
+        }
+      }
+
+      keys.add(entity.getKey());
+      if (keys.size() == DELETE_BATCH_SIZE) {
+        deletedComments += deleteBatch(datastore, keys);
+      }
+    }
+    deletedComments += deleteBatch(datastore, keys);
+    return deletedComments;
+  }
+
+  /**
+   * Method that deletes the keys with a single datastore call and clears the list
+   * Returns the number of deleted keys
+   */
+  private static int deleteBatch(DatastoreService datastore, List<Key> keys) {
+    int batchSize = keys.size();
+    if (batchSize > 0) {
+      datastore.delete(keys);
+      DataServlet.onCommentsDeleted(keys);
+      keys.clear();
+    }
+    return batchSize;
+  }
+
+  /**
+   * Method that converts milliseconds since epoch to a Date
+   * Returns null if the input is not a number
+   */
+  private static Date parseDate(String millisString) {
+    try {
+      return new Date(Long.parseLong(millisString));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method that converts the input to a Double
+   * Returns null if the input is not a number
+   */
+  private static Double parseDouble(String doubleString) {
+    if (doubleString == null) {
+      return null;
+    }
+    try {
+      return Double.parseDouble(doubleString);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentsFragmentCache;
+import com.google.sps.data.LanguageCatalog;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.List;
+import java.util.Locale;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that returns index.html with the newest comments already rendered in it */
+@WebServlet({"", "/index.html"})
+public class IndexServlet extends HttpServlet {
+
+  // Marker in index.html that is replaced by the rendered comments
+  private static final String COMMENTS_MARKER = "<!-- server-rendered-comments -->";
+
+  // Number of comments rendered by default, the same as script.js loads at once
+  private static final int DEFAULT_MAX_COMMENTS = 10;
+
+  // Language code of the untranslated comments, the value of index.html's "Original" option
+  private static final String ORIGINAL_LANGUAGE = "original";
+
+  // Whether comments are rendered on the server, otherwise index.html is returned as is
+  private static final boolean SERVER_RENDERED =
+      Boolean.parseBoolean(System.getProperty("comments.serverRendered", "true"));
+
+  // Parts of index.html before and after the comments marker
+  private String pageStart;
+  private String pageEnd;
+
+  @Override
+  public void init() throws ServletException {
+    String page = loadPage();
+    int markerIndex = page.indexOf(COMMENTS_MARKER);
+    if (markerIndex < 0) {
+      throw new ServletException("index.html is missing " + COMMENTS_MARKER);
+    }
+    pageStart = page.substring(0, markerIndex);
+    pageEnd = page.substring(markerIndex + COMMENTS_MARKER.length());
+  }
+
+  /**
+   * Method that handles the GET requests to "/" and "/index.html" paths
+   * Parameters "max-comments" and "comments-language-code" work like for "/data"
+   * Returns index.html with the comments rendered in the comments container
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Get the input from the request
+    String maxCommentsString = request.getParameter("max-comments");
+    int maxComments = maxCommentsString == null
+        ? DEFAULT_MAX_COMMENTS
+        : DataServlet.parseMaxComments(maxCommentsString);
+    // Unsupported codes show the original messages, so they share one cache entry
+    String languageCodeString = request.getParameter("comments-language-code");
+    String languageCode =
+        LanguageCatalog.isSupported(languageCodeString) ? languageCodeString : ORIGINAL_LANGUAGE;
+
+    // Get the rendered comments, from the cache if possible
+    String commentsHtml = "";
+    if (SERVER_RENDERED) {
+      String key = maxComments + "/" + languageCode;
+      commentsHtml = CommentsFragmentCache.get(key,
+          () -> renderComments(DataServlet.loadNewestComments(maxComments, languageCode)));
+    }
+
+    // Send the page as the response, it changes with every comment so it is not cached
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("text/html;");
+    response.setHeader("Cache-Control", "no-cache");
+    response.getWriter().write(pageStart);
+    response.getWriter().write(commentsHtml);
+    response.getWriter().write(pageEnd);
+  }
+
+  /**
+   * Method that renders the comments as <li> elements, like script.js displays them
+   * Delete buttons are left to script.js, because they depend on the user
+   */
+  static String renderComments(List<Comment> comments) {
+    DateFormat dateFormat =
+        DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US);
+    StringBuilder html = new StringBuilder();
+    for (Comment comment : comments) {
+      String addedDate = comment.getAddedDate() == null ? "" : dateFormat.format(comment.getAddedDate());
+      html.append("<li data-comment-id=\"").append(comment.getId()).append("\"")
+          .append(" style=\"color:").append(getSentimentColor(comment.getSentimentScore()))
+          .append("\">Message: ").append(escapeHtml(comment.getMessage()))
+          .append(", posted by <abbr title=\"").append(escapeHtml(comment.getEmail())).append("\">")
+          .append(escapeHtml(comment.getAddedBy())).append("</abbr>")
+          .append(", on: ").append(escapeHtml(addedDate))
+          .append("</li>");
+    }
+    return html.toString();
+  }
+
+  /**
+   * Method that returns the CSS color for a sentimentScore in [-1, 1]
+   * -1 means red, 0 means yellow, 1 means green, the same as script.js
+   */
+  private static String getSentimentColor(Double sentimentScore) {
+    double score = sentimentScore == null ? 0 : Math.max(-1, Math.min(1, sentimentScore));
+
+    // If score is in [-1, 0), interpolate from red to yellow, else from yellow to green
+    if (score < 0) {
+      return rgb(interpolate(255, 210, score + 1), interpolate(0, 210, score + 1), 0);
+    }
+    return rgb(interpolate(210, 0, score), interpolate(210, 255, score), 0);
+  }
+
+  private static double interpolate(double start, double stop, double fraction) {
+    return start + fraction * (stop - start);
+  }
+
+  private static String rgb(double r, double g, double b) {
+    return "rgb(" + Math.round(r) + "," + Math.round(g) + "," + Math.round(b) + ")";
+  }
+
+  /**
+   * Method that escapes text so it can be put in HTML content and attributes
+   */
+  private static String escapeHtml(String text) {
+    if (text == null) {
+      return "";
+    }
+    StringBuilder escaped = new StringBuilder(text.length());
+    for (char c : text.toCharArray()) {
+      switch (c) {
+        case '<': escaped.append("&lt;"); break;
+        case '>': escaped.append("&gt;"); break;
+        case '&': escaped.append("&amp;"); break;
+        case '"': escaped.append("&quot;"); break;
+        case '\'': escaped.append("&#39;"); break;
+        default: escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  /**
+   * Method that reads index.html from the webapp
+   */
+  private String loadPage() throws ServletException {
+    try (InputStream inputStream = getServletContext().getResourceAsStream("/index.html")) {
+      if (inputStream == null) {
+        throw new ServletException("index.html was not found");
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new ServletException(e);
+    }
+  }
+}
@@ -14,11 +14,10 @@
 
 package com.google.sps.servlets;
 
-import com.google.gson.Gson;
-import com.google.sps.data.Language;
-import java.util.ArrayList;
-import java.util.Locale;
+import com.google.sps.data.LanguageCatalog;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -28,27 +27,87 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/languages")
 public class LanguagesServlet extends HttpServlet {
 
+  // How long clients may reuse the languages without asking again, in seconds
+  private static final int MAX_AGE_SECONDS = 24 * 60 * 60;
+
   /** 
    * Method that handles the GET requests to "/languages" path
-   * Returns a JSON array with ISO languages
+   * Returns a JSON array with the languages comments can be translated to,
+   * named in the language preferred by the request's Accept-Language header
    */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // Get the language codes in an array
-    String[] languageCodes = Locale.getISOLanguages();
+    // Get the precomputed catalog for the user's language
+    LanguageCatalog catalog = LanguageCatalog.forLocale(request.getLocale());
+
+    // Send the gzipped JSON if the client accepts it, each encoding has its own ETag
+    boolean gzip = acceptsGzip(request.getHeader("Accept-Encoding"));
+    String etag = gzip ? catalog.getGzippedEtag() : catalog.getEtag();
 
-    // Create an ArrayList with the languages from the languageCodes
-    ArrayList<Language> languages = new ArrayList<>();
-    for (String code : languageCodes) {
-      languages.add(new Language(code));
+    // Let clients and proxies cache the response per language and encoding
+    response.setHeader("ETag", etag);
+    response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE_SECONDS);
+    response.setHeader("Vary", "Accept-Language, Accept-Encoding");
+
+    // If the client already has this catalog, don't send it again
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
     }
 
-    // Convert the languages to JSON
-    Gson gson = new Gson();
-    String json = gson.toJson(languages);
+    byte[] body;
+    if (gzip) {
+      response.setHeader("Content-Encoding", "gzip");
+      body = catalog.getGzippedJson();
+    } else {
+      body = catalog.getJson();
+    }
 
     // Send the JSON as the response
+    response.setCharacterEncoding("UTF-8");
     response.setContentType("application/json;");
-    response.getWriter().println(json);
+    response.setContentLength(body.length);
+    OutputStream outputStream = response.getOutputStream();
+    outputStream.write(body);
+  }
+
+  /** 
+   * Method that checks if an Accept-Encoding header allows gzip
+   * gzip must be listed, or matched by "*", with a quality above 0
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    Double gzipQuality = null;
+    Double anyQuality = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim().toLowerCase(Locale.ROOT);
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzipQuality = quality;
+      } else if (name.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+
+    if (gzipQuality != null) {
+      return gzipQuality > 0;
+    }
+    return anyQuality != null && anyQuality > 0;
   }
 }
@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.Identity;
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.filters.RateLimitFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** 
+ * Servlet that exposes the request metrics of this instance for Prometheus to scrape
+ * The metrics include per route counts, so like "/rate-limits" they are for admins only,
+ * or for a scraper sending the configured token, since it can't log in as an admin
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+  // Token the scraper sends in an "Authorization: Bearer" header, no token is accepted if empty
+  private static final String SCRAPE_TOKEN = System.getProperty("metrics.scrapeToken", "");
+
+  /**
+   * Method that handles the GET requests to "/metrics" path
+   * Returns the metrics in the Prometheus text format
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Make sure the metrics are read by the scraper or an admin
+    if (!hasScrapeToken(request) && !Identity.of(request).isAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("text/plain; version=0.0.4");
+    PrintWriter out = response.getWriter();
+    RequestMetrics.writePrometheus(out);
+
+    // Comment posts rejected by RateLimitFilter
+    out.println("# HELP comment_posts_rejected_total Comment posts over the rate limit.");
+    out.println("# TYPE comment_posts_rejected_total counter");
+    out.println("comment_posts_rejected_total{limit=\"user\"} "
+        + RateLimitFilter.getUserRejections());
+    out.println("comment_posts_rejected_total{limit=\"ip\"} " + RateLimitFilter.getIpRejections());
+  }
+
+  /**
+   * Method that checks if request has the "Authorization: Bearer" header with SCRAPE_TOKEN
+   * The token is compared in constant time, so the response time doesn't reveal it
+   */
+  private static boolean hasScrapeToken(HttpServletRequest request) {
+    String authorization = request.getHeader("Authorization");
+    if (SCRAPE_TOKEN.isEmpty() || authorization == null || !authorization.startsWith("Bearer ")) {
+      return false;
+    }
+    byte[] token = authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8);
+    return MessageDigest.isEqual(token, SCRAPE_TOKEN.getBytes(StandardCharsets.UTF_8));
+  }
+}
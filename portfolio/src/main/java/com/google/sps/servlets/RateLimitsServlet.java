@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.JsonObject;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
+import com.google.sps.filters.RateLimitFilter;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that reports how many comment posts this instance rejected */
+@WebServlet("/rate-limits")
+public class RateLimitsServlet extends HttpServlet {
+
+  /**
+   * Method that handles the GET requests to "/rate-limits" path
+   * Returns a JSON object with the rejection counts of RateLimitFilter
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Only admins can see the rejection counts
+    if (!Identity.of(request).isAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    JsonObject json = new JsonObject();
+    json.addProperty("userRejections", RateLimitFilter.getUserRejections());
+    json.addProperty("ipRejections", RateLimitFilter.getIpRejections());
+
+    // Send the JSON as the response
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Json.write(json, response.getOutputStream());
+  }
+}
@@ -14,9 +14,10 @@
 
 package com.google.sps.servlets;
 
-import com.google.gson.Gson;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.Identity;
+import com.google.sps.data.Json;
 import com.google.sps.data.User;
 import com.google.sps.data.LoggedUser;
 import com.google.sps.data.NotLoggedUser;
@@ -36,18 +37,29 @@ public class UserServlet extends HttpServlet {
    */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    User user = loadCurrentUser(Identity.of(request));
+
+    // Send the user as JSON in the response
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType("application/json;");
+    Json.write(user, response.getOutputStream());
+  }
+
+  /**
+   * Method that returns a LoggedUser or a NotLoggedUser describing the identity
+   */
+  static User loadCurrentUser(Identity identity) {
     User user;
     UserService userService = UserServiceFactory.getUserService();
 
-    if (userService.isUserLoggedIn()) {
+    if (identity.isLoggedIn()) {
       // Load user variables
-      String userId = userService.getCurrentUser().getUserId();
-      String userEmail = userService.getCurrentUser().getEmail();
       String urlToRedirectToAfterUserLogsOut = "/";
       String logoutURL = userService.createLogoutURL(urlToRedirectToAfterUserLogsOut);
       
       // Init user as a LoggedUser
-      user = new LoggedUser(userId, userEmail, logoutURL, userService.isUserAdmin());
+      user = new LoggedUser(
+          identity.getEmail(), identity.getNickname(), logoutURL, identity.isAdmin());
     } else {
       // Load user variables
       String urlToRedirectToAfterUserLogsIn = "/";
@@ -57,12 +69,6 @@ public class UserServlet extends HttpServlet {
       user = new NotLoggedUser(loginURL);
     }
 
-    // Convert the user to JSON
-    Gson gson = new Gson();
-    String json = gson.toJson(user);
-
-    // Send the JSON as the response
-    response.setContentType("application/json;");
-    response.getWriter().println(json);
+    return user;
   }
 }
@@ -90,8 +90,8 @@ function init() {
   // Simulate scroll event to position elements right
   onWindowScrolled();
 
-  // Show the elements that the user should see considering the login status
-  initUserLoggedElements();
+  // Load the user, the languages and the first comments in one request
+  bootstrapPage();
   
   initMap();
 }
@@ -108,41 +108,152 @@ function scrollToElement(elementId, duration = 300)
 }
 
 /**
- * Function that inits the comments section
- * Loads the comments languages available in a dropdown
- * Then load the comments in that language
+ * Function that loads everything the page needs with a single GET request to '/bootstrap'
+ * Then inits the user elements, the comments languages and the first comments
  */
-function initComments() {
-  // Make a GET request to '/languages' and parse the response json into 'languages' array
-  fetch('/languages').then(response => response.json()).then((languages) => {
-    // Get the comments language element
-    const commentsLanguageElement = document.getElementById('comments-language');
-
-    // For each language create and add an option to the comments language element
-    for(let language of languages) {
-      const optionElement = document.createElement('option');
-      optionElement.text = language.displayName + ' (' + language.code + ')';
-      optionElement.value = language.code;
-      commentsLanguageElement.add(optionElement);
+function bootstrapPage() {
+  // If the user didn't choose other language before, set it to 'original'
+  if(!localStorage.hasOwnProperty('commentsLanguageCode'))
+    localStorage.commentsLanguageCode = 'original';
+
+  let fetchURL = '/bootstrap?max-comments=' + COMMENTS_PER_LOAD;
+
+  // If the languageCode is not 'original', add the languageCode to the fetchURL
+  const languageCode = localStorage.commentsLanguageCode;
+  if(languageCode != 'original') {
+    fetchURL += '&comments-language-code=' + languageCode;
+  }
+
+  fetch(fetchURL).then(response => response.json()).then((page) => {
+    // Init the user first, so the comments know if the user is an admin
+    initUserLoggedElements(page.user);
+    initComments(page.languages);
+    displayComments(page.comments);
+
+    // Keep the comments up to date without polling
+    listenForCommentEvents();
+  });
+}
+
+/**
+ * Function that listens for comments being added or removed by '/comment-events'
+ */
+function listenForCommentEvents() {
+  const eventSource = new EventSource('/comment-events');
+
+  // Show a new comment, or reload the comments if they are translated
+  // Comments that are already displayed, e.g. after a reload, are skipped
+  eventSource.addEventListener('added', (event) => {
+    const comment = JSON.parse(event.data);
+    if(document.querySelector('[data-comment-id="' + comment.id + '"]') !== null) {
+      return;
     }
+    if(getCommentsLanguageCode() != 'original') {
+      reloadComments(commentsLoaded + 1);
+      return;
+    }
+    const commentsContainer = document.getElementById('comments-container');
+    commentsContainer.insertBefore(createCommentElement(comment),
+                                   commentsContainer.firstChild);
+    commentsLoaded++;
+  });
 
-    // If the user didn't choose other language before, set it to 'original'
-    if(!localStorage.hasOwnProperty('commentsLanguageCode'))
-      localStorage.commentsLanguageCode = 'original';
+  // Remove a deleted comment if it is displayed
+  eventSource.addEventListener('removed', (event) => {
+    const commentId = JSON.parse(event.data).id;
+    const commentListElement = document.querySelector('[data-comment-id="' + commentId + '"]');
+    if(commentListElement !== null) {
+      commentListElement.remove();
+      commentsLoaded--;
+    }
+  });
+
+  // Some events were missed, so fetch only the newest comments and merge them in
+  eventSource.addEventListener('reset', () => {
+    mergeNewestComments(COMMENTS_PER_LOAD);
+  });
+}
+
+/**
+ * Function that fetches the newest commentsNumber comments and merges them into the displayed ones
+ * Adds the comments that are not displayed yet and removes the displayed ones that are gone
+ * If the oldest fetched comment was not displayed, more of them may be missing, so it fetches twice as many
+ */
+function mergeNewestComments(commentsNumber) {
+  let fetchURL = '/data?max-comments=' + commentsNumber;
+
+  // If the languageCode is not 'original', add the languageCode to the fetchURL
+  const languageCode = getCommentsLanguageCode();
+  if(languageCode != 'original') {
+    fetchURL += '&comments-language-code=' + languageCode;
+  }
 
-    // Set the languages dropdown to the language the user chose before
-    commentsLanguageElement.value = localStorage.commentsLanguageCode;
+  fetch(fetchURL).then(response => response.json()).then((comments) => {
+    const commentsContainer = document.getElementById('comments-container');
+    const fetchedIds = new Set();
+    let oldestWasDisplayed = false;
+    let previousElement = null;
+
+    // The newest comment is the first child, insert every missing comment after the one before it
+    for(let comment of comments) {
+      fetchedIds.add(String(comment.id));
+      let commentListElement = document.querySelector('[data-comment-id="' + comment.id + '"]');
+      if(commentListElement === null) {
+        commentListElement = createCommentElement(comment);
+        commentsContainer.insertBefore(commentListElement, previousElement !== null
+                                       ? previousElement.nextSibling
+                                       : commentsContainer.firstChild);
+        commentsLoaded++;
+        oldestWasDisplayed = false;
+      } else {
+        oldestWasDisplayed = true;
+      }
+      previousElement = commentListElement;
+    }
 
-    // Reload the comments every time user changes the language
-    commentsLanguageElement.onchange = function() {
-      localStorage.commentsLanguageCode = getCommentsLanguageCode();
-      reloadComments();
+    // Displayed comments newer than the last fetched one that were not fetched were deleted
+    let element = commentsContainer.firstChild;
+    while(previousElement !== null && element !== null && element !== previousElement) {
+      const nextElement = element.nextSibling;
+      if(!fetchedIds.has(element.dataset.commentId)) {
+        element.remove();
+        commentsLoaded--;
+      }
+      element = nextElement;
     }
 
-    loadComments();
+    if(!oldestWasDisplayed && comments.length === commentsNumber && commentsNumber < commentsLoaded) {
+      mergeNewestComments(commentsNumber * 2);
+    }
   });
 }
 
+/**
+ * Function that inits the comments section
+ * Loads the comments languages available in a dropdown
+ */
+function initComments(languages) {
+  // Get the comments language element
+  const commentsLanguageElement = document.getElementById('comments-language');
+
+  // For each language create and add an option to the comments language element
+  for(let language of languages) {
+    const optionElement = document.createElement('option');
+    optionElement.text = language.displayName + ' (' + language.code + ')';
+    optionElement.value = language.code;
+    commentsLanguageElement.add(optionElement);
+  }
+
+  // Set the languages dropdown to the language the user chose before
+  commentsLanguageElement.value = localStorage.commentsLanguageCode;
+
+  // Reload the comments every time user changes the language
+  commentsLanguageElement.onchange = function() {
+    localStorage.commentsLanguageCode = getCommentsLanguageCode();
+    reloadComments();
+  }
+}
+
 /**
  * Function that loads more comments
  * commentsToLoad parameter specifies how many more comments to load
@@ -164,43 +275,56 @@ function reloadComments(commentsNumber = commentsLoaded) {
   }
 
   // Make a GET request to '/data' and parse the response json into 'comments' array
-  fetch(fetchURL).then(response => response.json()).then((comments) => {
-    // Get the comments container element
-    const commentsContainer = document.getElementById('comments-container');
+  fetch(fetchURL).then(response => response.json()).then(displayComments);
+}
 
-    // Add all comments in the comments container
-    commentsContainer.innerHTML = '';
-    for(let comment of comments) {
-      // Create the list element
-      const commentListElement = createListElement('Message: ' + comment.message +
-                                                   ', posted by <abbr title="' + comment.email + 
-                                                   '">' + comment.addedBy + '</abbr>' +
-                                                   ', on: ' + comment.addedDate);
-          
-      // Set comment color based on its sentimentScore
-      const commentColor = getSentimentColor(comment.sentimentScore);
-      commentListElement.style.color = "rgb(" + commentColor.r + 
-                                       "," + commentColor.g + 
-                                       "," + commentColor.b +
-                                       ")"; 
-
-      // If user is an admin, show delete buttons to each comment
-      if(isAdmin) {
-        // Initialize the delete button element and attach it to the list element
-        const commentDeleteButton = document.createElement('button');
-        commentDeleteButton.innerHTML = "Delete";
-        commentDeleteButton.classList.add("comment-delete-button");
-        commentDeleteButton.onclick = function() {
-          deleteComment(comment.id);
-        }
-        commentListElement.insertBefore(commentDeleteButton, commentListElement.firstChild);
-      }
+/**
+ * Function that replaces the displayed comments with the comments array
+ */
+function displayComments(comments) {
+  // Get the comments container element
+  const commentsContainer = document.getElementById('comments-container');
+
+  // Add all comments in the comments container
+  commentsContainer.innerHTML = '';
+  for(let comment of comments) {
+    // Attach the comment list element to the comments container
+    commentsContainer.appendChild(createCommentElement(comment));  
+  }
+  commentsLoaded = comments.length;
+}
 
-      // Attach the comment list element to the comments container
-      commentsContainer.appendChild(commentListElement);  
+/**
+ * Function that creates the <li> element displaying a comment
+ */
+function createCommentElement(comment) {
+  // Create the list element
+  const commentListElement = createListElement('Message: ' + comment.message +
+                                               ', posted by <abbr title="' + comment.email + 
+                                               '">' + comment.addedBy + '</abbr>' +
+                                               ', on: ' + comment.addedDate);
+  commentListElement.dataset.commentId = comment.id;
+      
+  // Set comment color based on its sentimentScore
+  const commentColor = getSentimentColor(comment.sentimentScore);
+  commentListElement.style.color = "rgb(" + commentColor.r + 
+                                   "," + commentColor.g + 
+                                   "," + commentColor.b +
+                                   ")"; 
+
+  // If user is an admin, show delete buttons to each comment
+  if(isAdmin) {
+    // Initialize the delete button element and attach it to the list element
+    const commentDeleteButton = document.createElement('button');
+    commentDeleteButton.innerHTML = "Delete";
+    commentDeleteButton.classList.add("comment-delete-button");
+    commentDeleteButton.onclick = function() {
+      deleteComment(comment.id);
     }
-    commentsLoaded = comments.length;
-  });
+    commentListElement.insertBefore(commentDeleteButton, commentListElement.firstChild);
+  }
+
+  return commentListElement;
 }
 
 /**
@@ -382,29 +506,23 @@ function interpolateValue(start, stop, fraction) {
  * If the user is logged in, the function inits loggedInElements
  * Else the function inits loggedOutElements
  */
-function initUserLoggedElements() {
-    // Make a GET request to "/user" to get user information in user object
-    fetch('user').then(response => response.json()).then((user) => {
-      if(user.loggedIn === true) {
-        const logoutLink = document.getElementById('logout-link');
-        logoutLink.href = user.logoutURL;
-        const nicknameInput = document.getElementById('comment-addedBy');
-        nicknameInput.value = user.nickname;
-
-        if(user.isAdmin) {
-          isAdmin = true;
-        }
-
-        displayElements(loggedInElements);
-      } else {
-        const loginLink = document.getElementById('login-link');
-        loginLink.href = user.loginURL;
-        displayElements(loggedOutElements);
+function initUserLoggedElements(user) {
+    if(user.loggedIn === true) {
+      const logoutLink = document.getElementById('logout-link');
+      logoutLink.href = user.logoutURL;
+      const nicknameInput = document.getElementById('comment-addedBy');
+      nicknameInput.value = user.nickname;
+
+      if(user.isAdmin) {
+        isAdmin = true;
       }
 
-      // Load comments only after we know the user's login status
-      initComments();
-    });
+      displayElements(loggedInElements);
+    } else {
+      const loginLink = document.getElementById('login-link');
+      loginLink.href = user.loginURL;
+      displayElements(loggedOutElements);
+    }
 }
 
 /**
@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentArchiveTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void exportThenImportRestoresAllComments() throws Exception {
+    // More comments than one chunk, so the cursors are used
+    List<Key> keys = new ArrayList<>();
+    for (int i = 0; i < 1203; i++) {
+      Entity entity = new Entity("Comment");
+      entity.setProperty("message", "message " + i);
+      entity.setProperty("addedBy", i % 2 == 0 ? "Ana" : null);
+      entity.setProperty("email", "user@example.com");
+      entity.setProperty("addedDate", new Date(1000L * i));
+      entity.setProperty("sentimentScore", i % 3 == 0 ? null : 0.25);
+      keys.add(datastore.put(entity));
+    }
+
+    // Export in pages that don't end on a chunk boundary, concatenating the gzip members
+    ByteArrayOutputStream exported = new ByteArrayOutputStream();
+    String cursor = null;
+    int pages = 0;
+    do {
+      cursor = CommentArchive.exportComments(datastore, exported, cursor, 700);
+      pages++;
+    } while (cursor != null);
+    Assert.assertEquals(2, pages);
+
+    Entity original = datastore.get(keys.get(42));
+    datastore.delete(keys);
+    Assert.assertEquals(0, countComments());
+
+    List<Integer> chunkSizes = new ArrayList<>();
+    CommentArchive.ImportResult result = CommentArchive.importComments(datastore,
+        new ByteArrayInputStream(exported.toByteArray()), chunk -> chunkSizes.add(chunk.size()));
+
+    Assert.assertEquals(1203, result.getImportedComments());
+    Assert.assertEquals(0, result.getOverwrittenComments());
+
+    Assert.assertEquals(1203, countComments());
+    Assert.assertEquals(3, chunkSizes.size());
+    Assert.assertEquals(original.getProperties(), datastore.get(keys.get(42)).getProperties());
+  }
+
+  @Test
+  public void importsPlainNdjson() throws Exception {
+    String ndjson = "{\"id\":7,\"message\":\"hi\",\"addedBy\":\"Bob\",\"email\":null,"
+        + "\"addedDate\":5000,\"sentimentScore\":-0.5,\"unknown\":[1]}\n"
+        + "{\"id\":8,\"message\":\"bye\"}\n";
+
+    CommentArchive.ImportResult result = CommentArchive.importComments(datastore,
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), chunk -> {});
+
+    Assert.assertEquals(2, result.getImportedComments());
+    Entity entity = datastore.get(KeyFactory.createKey("Comment", 7));
+    Assert.assertEquals("hi", entity.getProperty("message"));
+    Assert.assertEquals(new Date(5000), entity.getProperty("addedDate"));
+    Assert.assertEquals(-0.5, (Double) entity.getProperty("sentimentScore"), 0);
+  }
+
+  @Test
+  public void importedIdsAreNotAllocatedAgain() throws Exception {
+    String ndjson = "{\"id\":1,\"message\":\"a\"}\n{\"id\":2000,\"message\":\"b\"}\n";
+
+    CommentArchive.importComments(datastore,
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), chunk -> {});
+
+    long allocatedId = datastore.allocateIds("Comment", 1).getStart().getId();
+    Assert.assertTrue(allocatedId > 2000);
+  }
+
+  @Test
+  public void exportingAnEmptyDatastoreHasNoNextPage() throws Exception {
+    ByteArrayOutputStream exported = new ByteArrayOutputStream();
+
+    Assert.assertNull(CommentArchive.exportComments(datastore, exported, null, 700));
+    Assert.assertEquals(0, CommentArchive.countComments(
+        new ByteArrayInputStream(exported.toByteArray())));
+  }
+
+  @Test
+  public void reimportingCountsOverwrittenComments() throws Exception {
+    String ndjson = "{\"id\":3,\"message\":\"a\"}\n{\"id\":4,\"message\":\"b\"}\n";
+    CommentArchive.importComments(datastore,
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), chunk -> {});
+
+    CommentArchive.ImportResult result = CommentArchive.importComments(datastore,
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), chunk -> {});
+
+    Assert.assertEquals(2, result.getImportedComments());
+    Assert.assertEquals(2, result.getOverwrittenComments());
+    Assert.assertEquals(2, countComments());
+  }
+
+  @Test(expected = IOException.class)
+  public void countingRejectsAMalformedLine() throws Exception {
+    String ndjson = "{\"id\":5,\"message\":\"a\"}\nnot json\n";
+
+    CommentArchive.countComments(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private int countComments() {
+    return datastore.prepare(new Query("Comment")).countEntities(FetchOptions.Builder.withDefaults());
+  }
+}
@@ -0,0 +1,229 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.sps.data.CommentEventBuffer.CommentEvent;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentEventBufferTest {
+  private static final Comment COMMENT = new Comment(1, "Hello", "Mihai", "a@b.com", new Date(), 0.5);
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  private MemcacheService memcache;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    memcache = MemcacheServiceFactory.getMemcacheService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void returnsEventsAfterSequence() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishAdded(COMMENT);
+    long first = buffer.getLastSequence();
+    buffer.publishRemoved(2);
+    buffer.publishRemoved(3);
+
+    List<CommentEvent> events = buffer.eventsAfter(first);
+
+    Assert.assertEquals(2, events.size());
+    Assert.assertEquals(first + 1, events.get(0).getSequence());
+    Assert.assertEquals("removed", events.get(0).getType());
+    Assert.assertEquals(2, events.get(0).getCommentId());
+    Assert.assertEquals("{\"id\":2}", events.get(0).getData());
+    Assert.assertEquals(first + 2, events.get(1).getSequence());
+  }
+
+  @Test
+  public void addedEventContainsCommentJson() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishRemoved(5);
+    long before = buffer.getLastSequence();
+    buffer.publishAdded(COMMENT);
+
+    CommentEvent event = buffer.eventsAfter(before).get(0);
+
+    Assert.assertEquals("added", event.getType());
+    Assert.assertEquals(COMMENT.getId(),
+        Json.gson().fromJson(event.getData(), Comment.class).getId());
+  }
+
+  @Test
+  public void eventsAreSharedWithOtherInstances() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    CommentEventBuffer otherBuffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishRemoved(1);
+    long sequence = otherBuffer.getLastSequence();
+    buffer.publishRemoved(2);
+
+    List<CommentEvent> events = otherBuffer.eventsAfter(sequence);
+
+    Assert.assertEquals(1, events.size());
+    Assert.assertEquals(2, events.get(0).getCommentId());
+  }
+
+  @Test
+  public void readersTooFarBehindGetNull() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 0);
+    buffer.publishRemoved(1);
+    long first = buffer.getLastSequence();
+    buffer.publishRemoved(2);
+    buffer.publishRemoved(3);
+    buffer.publishRemoved(4);
+
+    Assert.assertNull(buffer.eventsAfter(first));
+    Assert.assertEquals(2, buffer.eventsAfter(first + 1).size());
+  }
+
+  @Test
+  public void evictedEventsReturnNull() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishRemoved(1);
+    long first = buffer.getLastSequence();
+    buffer.publishRemoved(2);
+    buffer.publishRemoved(3);
+    memcache.delete("CommentEvent." + (first + 1));
+
+    Assert.assertNull(buffer.eventsAfter(first));
+  }
+
+  @Test
+  public void eventsNotStoredYetAreReturnedLater() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishRemoved(1);
+    long first = buffer.getLastSequence();
+    buffer.publishRemoved(2);
+    memcache.delete("CommentEvent." + (first + 1));
+
+    Assert.assertTrue(buffer.eventsAfter(first).isEmpty());
+  }
+
+  @Test
+  public void unknownSequenceReturnsNull() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 0);
+    buffer.publishRemoved(1);
+
+    Assert.assertNull(buffer.eventsAfter(buffer.getLastSequence() + 5));
+    Assert.assertNull(buffer.eventsAfter(CommentEventBuffer.UNKNOWN_SEQUENCE));
+  }
+
+  @Test
+  public void evictedCounterDoesNotGoBack() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 4, 0);
+    buffer.publishRemoved(1);
+    long first = buffer.getLastSequence();
+    memcache.clearAll();
+    buffer.publishRemoved(2);
+
+    Assert.assertTrue(buffer.getLastSequence() > first);
+  }
+
+  @Test
+  public void eventIdsRoundTrip() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 0);
+
+    Assert.assertEquals(3, buffer.sequenceOf(buffer.toEventId(3)));
+  }
+
+  @Test
+  public void malformedEventIdsAreUnknown() {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 0);
+
+    Assert.assertEquals(CommentEventBuffer.UNKNOWN_SEQUENCE, buffer.sequenceOf("abc-12"));
+    Assert.assertEquals(CommentEventBuffer.UNKNOWN_SEQUENCE, buffer.sequenceOf(""));
+    Assert.assertEquals(CommentEventBuffer.UNKNOWN_SEQUENCE, buffer.sequenceOf("-3"));
+  }
+
+  @Test
+  public void awaitTimesOutWithNoEvents() throws InterruptedException {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 0);
+    buffer.publishRemoved(1);
+
+    Assert.assertTrue(buffer.awaitEventsAfter(buffer.getLastSequence(), 10).isEmpty());
+  }
+
+  @Test
+  public void awaitWakesUpOnPublish() throws InterruptedException {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 10000);
+    buffer.publishRemoved(1);
+    long sequence = buffer.getLastSequence();
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    Thread publisher = new Thread(() -> {
+      // Memcache calls need the test environment, which is set per thread
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        return;
+      }
+      buffer.publishRemoved(7);
+    });
+    publisher.start();
+
+    List<CommentEvent> events = buffer.awaitEventsAfter(sequence, 10000);
+    publisher.join();
+
+    Assert.assertEquals(1, events.size());
+    Assert.assertEquals(7, events.get(0).getCommentId());
+  }
+
+  @Test
+  public void awaitFindsEventsPublishedByOtherInstances() throws InterruptedException {
+    CommentEventBuffer buffer = new CommentEventBuffer(memcache, 2, 10);
+    CommentEventBuffer otherBuffer = new CommentEventBuffer(memcache, 2, 10);
+    buffer.publishRemoved(1);
+    long sequence = otherBuffer.getLastSequence();
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    Thread publisher = new Thread(() -> {
+      // Memcache calls need the test environment, which is set per thread
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        return;
+      }
+      buffer.publishRemoved(7);
+    });
+    publisher.start();
+
+    List<CommentEvent> events = otherBuffer.awaitEventsAfter(sequence, 10000);
+    publisher.join();
+
+    Assert.assertEquals(1, events.size());
+    Assert.assertEquals(7, events.get(0).getCommentId());
+  }
+}
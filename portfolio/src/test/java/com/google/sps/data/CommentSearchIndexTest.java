@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Date;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentSearchIndexTest {
+
+  private static Comment comment(long id, String message, String addedBy) {
+    return new Comment(id, message, addedBy, "user@example.com", new Date(id), 0.0);
+  }
+
+  @Test
+  public void matchesAllTermsCaseInsensitive() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "Great portfolio, nice projects!", "Ana"));
+    index.add(comment(2, "Nice photos", "Bob"));
+    index.add(comment(3, "great PROJECTS indeed", null));
+
+    List<Comment> results = index.search("projects great", 10);
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertTrue(results.stream().allMatch(c -> c.getId() != 2));
+    Assert.assertTrue(index.search("great photos", 10).isEmpty());
+    Assert.assertTrue(index.search("null", 10).isEmpty());
+  }
+
+  @Test
+  public void searchesAuthors() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "Hello", "Ana"));
+    index.add(comment(2, "Hello", "Bob"));
+
+    List<Comment> results = index.search("bob", 10);
+
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(2, results.get(0).getId());
+  }
+
+  @Test
+  public void ranksFrequentTermsFirstAndLimitsResults() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "cat", "Ana"));
+    index.add(comment(2, "cat cat cat", "Ana"));
+    index.add(comment(3, "cat cat", "Ana"));
+    index.add(comment(4, "dog", "Ana"));
+
+    List<Comment> results = index.search("cat", 2);
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(2, results.get(0).getId());
+    Assert.assertEquals(3, results.get(1).getId());
+  }
+
+  @Test
+  public void removedCommentsAreNotReturned() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    for (long id = 1; id <= 100; id++) {
+      index.add(comment(id, "word" + (id % 2 == 0 ? " even" : ""), "Ana"));
+    }
+    for (long id = 1; id <= 80; id++) {
+      index.remove(id);
+    }
+
+    Assert.assertEquals(20, index.size());
+    Assert.assertEquals(10, index.search("even word", 100).size());
+    Assert.assertEquals(20, index.search("word", 100).size());
+    Assert.assertTrue(index.search("word", 100).stream().allMatch(c -> c.getId() > 80));
+  }
+
+  @Test
+  public void addingTheSameCommentTwiceKeepsOneCopy() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "hello", "Ana"));
+    index.add(comment(1, "hello", "Ana"));
+
+    Assert.assertEquals(1, index.size());
+    Assert.assertEquals(1, index.search("hello", 10).size());
+  }
+
+  @Test
+  public void commentsRemovedWhileLoadingAreNotAddedBack() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.startLoading();
+    index.addLoaded(comment(1, "hello", "Ana"));
+    index.remove(2);
+    index.addLoaded(comment(2, "hello", "Bob"));
+    index.finishLoading();
+
+    List<Comment> results = index.search("hello", 10);
+
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(1, results.get(0).getId());
+  }
+
+  @Test
+  public void finishingALoadRemovesCommentsItDidNotRead() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "hello", "Ana"));
+    index.add(comment(2, "hello", "Bob"));
+    index.startLoading();
+    index.add(comment(3, "hello", "Dan"));
+    index.addLoaded(comment(1, "hello", "Ana"));
+    index.finishLoading();
+
+    List<Comment> results = index.search("hello", 10);
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(2, index.size());
+    Assert.assertFalse(results.stream().anyMatch(result -> result.getId() == 2));
+  }
+
+  @Test
+  public void tiesAreRankedByAddedDateNotInsertionOrder() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(20, "hello", "Ana"));
+    index.add(comment(10, "hello", "Ana"));
+    index.add(comment(30, "hello", "Ana"));
+
+    List<Comment> results = index.search("hello", 2);
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(30, results.get(0).getId());
+    Assert.assertEquals(20, results.get(1).getId());
+  }
+
+  @Test
+  public void replaceUpdatesTheIndexedComment() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "old text", "Ana"));
+
+    index.replace(comment(1, "new text", "Ana"));
+
+    Assert.assertTrue(index.search("old", 10).isEmpty());
+    Assert.assertEquals(1, index.search("new", 10).size());
+    Assert.assertEquals(1, index.size());
+  }
+}
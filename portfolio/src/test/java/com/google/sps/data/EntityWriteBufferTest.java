@@ -0,0 +1,161 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EntityWriteBufferTest {
+  private static final long NO_DELAY_LIMIT = Long.MAX_VALUE;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void batchSizeOneWritesThrough() {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 1, NO_DELAY_LIMIT);
+
+    buffer.add(Arrays.asList(createComment("hello"), createUser("id", "nick")));
+
+    Assert.assertEquals(0, buffer.pendingCount());
+    Assert.assertEquals(1, countEntities("Comment"));
+    Assert.assertEquals(1, countEntities("User"));
+  }
+
+  @Test
+  public void entitiesStayPendingUntilBatchIsFull() {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 3, NO_DELAY_LIMIT);
+
+    buffer.add(Arrays.asList(createComment("first")));
+    buffer.add(Arrays.asList(createComment("second")));
+
+    Assert.assertEquals(2, buffer.pendingCount());
+    Assert.assertEquals(0, countEntities("Comment"));
+
+    buffer.add(Arrays.asList(createComment("third")));
+
+    Assert.assertEquals(0, buffer.pendingCount());
+    Assert.assertEquals(3, countEntities("Comment"));
+  }
+
+  @Test
+  public void zeroDelayFlushesOnEveryAdd() {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 100, 0);
+
+    buffer.add(Arrays.asList(createComment("hello")));
+
+    Assert.assertEquals(0, buffer.pendingCount());
+    Assert.assertEquals(1, countEntities("Comment"));
+  }
+
+  @Test
+  public void flushSavesPendingEntities() {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 100, NO_DELAY_LIMIT);
+
+    buffer.add(Arrays.asList(createComment("first"), createComment("second")));
+    buffer.flush();
+
+    Assert.assertEquals(0, buffer.pendingCount());
+    Assert.assertEquals(2, countEntities("Comment"));
+  }
+
+  @Test
+  public void sameKeyIsCoalesced() throws EntityNotFoundException {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 100, NO_DELAY_LIMIT);
+
+    buffer.add(Arrays.asList(createComment("first"), createUser("id", "old")));
+    buffer.add(Arrays.asList(createComment("second"), createUser("id", "new")));
+
+    Assert.assertEquals(3, buffer.pendingCount());
+
+    buffer.flush();
+
+    Entity user = datastore.get(KeyFactory.createKey("User", "id"));
+    Assert.assertEquals("new", user.getProperty("nickname"));
+    Assert.assertEquals(1, countEntities("User"));
+    Assert.assertEquals(2, countEntities("Comment"));
+  }
+
+  @Test
+  public void flushIfDueWaitsForTheDelay() throws InterruptedException {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 100, 50);
+
+    buffer.add(Arrays.asList(createComment("lone")));
+    buffer.flushIfDue();
+
+    Assert.assertEquals(1, buffer.pendingCount());
+
+    Thread.sleep(60);
+    buffer.flushIfDue();
+
+    Assert.assertEquals(0, buffer.pendingCount());
+    Assert.assertEquals(1, countEntities("Comment"));
+  }
+
+  @Test
+  public void flushWithNothingPendingDoesNothing() {
+    EntityWriteBuffer buffer = new EntityWriteBuffer(datastore, 100, NO_DELAY_LIMIT);
+
+    buffer.flush();
+
+    Assert.assertEquals(0, countEntities("Comment"));
+  }
+
+  private static Entity createComment(String message) {
+    Entity entity = new Entity("Comment");
+    entity.setProperty("message", message);
+    return entity;
+  }
+
+  private static Entity createUser(String id, String nickname) {
+    Entity entity = new Entity(KeyFactory.createKey("User", id));
+    entity.setProperty("id", id);
+    entity.setProperty("nickname", nickname);
+    return entity;
+  }
+
+  private int countEntities(String kind) {
+    return datastore.prepare(new Query(kind)).countEntities(FetchOptions.Builder.withDefaults());
+  }
+}
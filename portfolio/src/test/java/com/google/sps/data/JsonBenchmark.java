@@ -0,0 +1,78 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** 
+ * Benchmark comparing a new reflective Gson per request with the shared Json adapters
+ * Run it after `mvn test-compile` with the test classpath, through the main method
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+  // Number of comments in a serialized page
+  private static final int COMMENTS = 100;
+
+  private List<Comment> comments;
+
+  @Setup
+  public void setUp() {
+    comments = new ArrayList<>();
+    for (int i = 0; i < COMMENTS; i++) {
+      comments.add(new Comment(i, "Comment number " + i, "Mihai", "a@b.com", new Date(), 0.5));
+    }
+  }
+
+  @Benchmark
+  public byte[] reflectiveGsonPerRequest() {
+    return new Gson().toJson(comments).getBytes();
+  }
+
+  @Benchmark
+  public byte[] sharedJsonAdapters() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Json.write(comments, outputStream);
+    return outputStream.toByteArray();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonBenchmark.class.getSimpleName()).build()).run();
+  }
+}
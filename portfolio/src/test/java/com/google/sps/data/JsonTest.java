@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class JsonTest {
+  private static final Gson REFLECTIVE_GSON = new Gson();
+
+  @Test
+  public void commentMatchesReflectiveJson() {
+    Comment comment = new Comment(42, "Hello <b>", "Mihai", "a@b.com", new Date(1594000000000L), 0.5);
+
+    assertSameJson(REFLECTIVE_GSON.toJson(comment), Json.gson().toJson(comment));
+  }
+
+  @Test
+  public void commentWithNullsMatchesReflectiveJson() {
+    Comment comment = new Comment(7, "Hello", null, null, null, null);
+
+    assertSameJson(REFLECTIVE_GSON.toJson(comment), Json.gson().toJson(comment));
+  }
+
+  @Test
+  public void languagesMatchReflectiveJson() {
+    List<Language> languages =
+        Arrays.asList(new Language("en", Locale.ENGLISH), new Language("ro", Locale.ENGLISH));
+
+    assertSameJson(REFLECTIVE_GSON.toJson(languages), Json.gson().toJson(languages));
+  }
+
+  @Test
+  public void usersMatchReflectiveJson() {
+    User loggedUser = new LoggedUser("a@b.com", "Mihai", "/logout", true);
+    User notLoggedUser = new NotLoggedUser("/login");
+
+    assertSameJson(REFLECTIVE_GSON.toJson(loggedUser), Json.gson().toJson(loggedUser));
+    assertSameJson(REFLECTIVE_GSON.toJson(notLoggedUser), Json.gson().toJson(notLoggedUser));
+  }
+
+  @Test
+  public void commentCanBeReadBack() {
+    Comment comment = new Comment(42, "Hello <b>", "Mihai", "a@b.com", new Date(1594000000000L), 0.5);
+
+    String json = Json.gson().toJson(comment);
+    Comment read = Json.gson().fromJson(json, Comment.class);
+
+    assertSameJson(json, Json.gson().toJson(read));
+    Assert.assertNull(Json.gson().fromJson("null", Comment.class));
+  }
+
+  @Test
+  public void writeUsesUtf8() throws IOException {
+    Language language = new Language("ro", new Locale("ro"));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    Json.write(language, outputStream);
+
+    assertSameJson(
+        REFLECTIVE_GSON.toJson(language), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static void assertSameJson(String expected, String actual) {
+    Assert.assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual));
+  }
+}
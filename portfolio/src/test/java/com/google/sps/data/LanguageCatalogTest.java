@@ -0,0 +1,60 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class LanguageCatalogTest {
+
+  @Test
+  public void keepsOnlyTheBackendCodesInIsoOrder() {
+    Set<String> codes =
+        LanguageCatalog.filterIsoCodes(new HashSet<>(Arrays.asList("ro", "en", "xx")));
+
+    Assert.assertEquals(Arrays.asList("en", "ro"), Arrays.asList(codes.toArray()));
+  }
+
+  @Test
+  public void matchesTheCurrentCodesOfHebrewIndonesianAndYiddish() {
+    Set<String> codes =
+        LanguageCatalog.filterIsoCodes(new HashSet<>(Arrays.asList("he", "id", "yi")));
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList("he", "id", "yi")), codes);
+  }
+
+  @Test
+  public void keepsTheOldCodesIfTheBackendUsesThem() {
+    Set<String> codes = LanguageCatalog.filterIsoCodes(new HashSet<>(Arrays.asList("iw")));
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList("iw")), codes);
+  }
+
+  @Test
+  public void fallbackUsesTheCurrentCodes() {
+    Set<String> codes = LanguageCatalog.filterIsoCodes(null);
+
+    Assert.assertTrue(codes.contains("he"));
+    Assert.assertFalse(codes.contains("iw"));
+    Assert.assertTrue(codes.contains("en"));
+  }
+}
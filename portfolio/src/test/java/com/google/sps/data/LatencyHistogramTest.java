@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverEveryValueOnce() {
+    Assert.assertEquals(0, LatencyHistogram.bucketLowerBound(0));
+    for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+      long upper = LatencyHistogram.bucketUpperBound(i);
+      Assert.assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketLowerBound(i)));
+      Assert.assertEquals(i, LatencyHistogram.bucketIndex(upper));
+      Assert.assertEquals(upper + 1, LatencyHistogram.bucketLowerBound(i + 1));
+    }
+  }
+
+  @Test
+  public void bucketsAreWithinOneSixteenth() {
+    for (long value = 16; value < (1L << 30); value = value * 3 / 2 + 1) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long width =
+          LatencyHistogram.bucketUpperBound(index) - LatencyHistogram.bucketLowerBound(index);
+      Assert.assertTrue(width <= value / 16);
+    }
+  }
+
+  @Test
+  public void quantilesOfUniformValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 10000; micros++) {
+      histogram.record(micros);
+    }
+
+    long[] quantiles = histogram.getQuantileMicros(0.5, 0.99, 0.999, 1);
+
+    Assert.assertEquals(10000, histogram.getCount());
+    Assert.assertEquals(10000, histogram.getMaxMicros());
+    Assert.assertEquals(5000, quantiles[0], 5000 / 16);
+    Assert.assertEquals(9900, quantiles[1], 9900 / 16);
+    Assert.assertEquals(9990, quantiles[2], 9990 / 16);
+    Assert.assertEquals(10000, quantiles[3]);
+  }
+
+  @Test
+  public void hugeValuesGoToTheLastBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE / 2);
+    histogram.record(-5);
+
+    long[] quantiles = histogram.getQuantileMicros(0, 1);
+
+    Assert.assertEquals(0, quantiles[0]);
+    Assert.assertEquals(Long.MAX_VALUE / 2, quantiles[1]);
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class NicknameStoreTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void legacyUserEntitiesAreReadAndMoved() throws EntityNotFoundException {
+    // Saved before users were keyed by id, with a generated id
+    Entity legacyEntity = new Entity("User");
+    legacyEntity.setProperty("id", "legacy-user");
+    legacyEntity.setProperty("nickname", "Ana");
+    datastore.put(legacyEntity);
+
+    Assert.assertEquals("Ana", NicknameStore.getNickname("legacy-user"));
+
+    Entity movedEntity = datastore.get(NicknameStore.createUserKey("legacy-user"));
+    Assert.assertEquals("Ana", movedEntity.getProperty("nickname"));
+    Assert.assertEquals(1, datastore.prepare(new Query("User")).countEntities(
+        FetchOptions.Builder.withDefaults()));
+  }
+
+  @Test
+  public void usersWithoutEntityHaveNoNickname() {
+    Assert.assertEquals("", NicknameStore.getNickname("new-user"));
+  }
+
+  @Test
+  public void nicknamesAreCachedOnlyOnceSaved() {
+    Assert.assertEquals("", NicknameStore.getNickname("saving-user"));
+
+    Entity entity = NicknameStore.createNicknameEntity("saving-user", "Bob");
+
+    Assert.assertEquals("", NicknameStore.getNickname("saving-user"));
+
+    datastore.put(entity);
+    NicknameStore.onUserSaved(entity);
+
+    Assert.assertEquals("Bob", NicknameStore.getNickname("saving-user"));
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class TokenBucketLimiterTest {
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  @Test
+  public void allowsBurstUpToCapacity() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(3, ONE_HOUR, 16);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertTrue(limiter.tryAcquire("a") > 0);
+    Assert.assertEquals(1, limiter.getRejections());
+  }
+
+  @Test
+  public void retryAfterIsAboutTheRefillTime() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 16);
+
+    limiter.tryAcquire("a");
+    long retryAfterMillis = limiter.tryAcquire("a");
+
+    Assert.assertTrue(retryAfterMillis > ONE_HOUR - 1000);
+    Assert.assertTrue(retryAfterMillis <= ONE_HOUR);
+  }
+
+  @Test
+  public void refillsOverTime() throws InterruptedException {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, 20, 16);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Thread.sleep(50);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void keysHaveSeparateBuckets() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 4096);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("b"));
+    Assert.assertTrue(limiter.tryAcquire("a") > 0);
+  }
+
+  @Test
+  public void checkDoesNotTakeAToken() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 16);
+
+    Assert.assertEquals(0, limiter.check("a"));
+    Assert.assertEquals(0, limiter.check("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertTrue(limiter.check("a") > 0);
+    Assert.assertEquals(1, limiter.getRejections());
+  }
+
+  @Test
+  public void releaseGivesTheTokenBack() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 16);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    limiter.release("a");
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void releaseDoesNotExceedCapacity() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 16);
+
+    limiter.release("a");
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertTrue(limiter.tryAcquire("a") > 0);
+  }
+
+  @Test
+  public void collidingKeysShareABusyBucket() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_HOUR, 1);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertTrue(limiter.tryAcquire("b") > 0);
+  }
+}
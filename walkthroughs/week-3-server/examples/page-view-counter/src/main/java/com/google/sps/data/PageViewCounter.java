@@ -0,0 +1,215 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts page views per path without a hot entity.
+ *
+ * Request threads only add to a LongAdder, which spreads contention over cells.
+ * Every few seconds one request flushes the local counts to datastore, adding
+ * each path's count to one of several shard entities picked at random. Reading
+ * a total sums the shards, which is cached briefly, plus the unflushed views.
+ *
+ * A failed commit may still have been applied, so every flush of a path has an id
+ * that the shard remembers. A failed flush is retried with the same id and shard,
+ * and a retry of a flush that was applied after all changes nothing.
+ */
+public final class PageViewCounter {
+
+  private static final String SHARD_KIND = "PageViewShard";
+
+  // Number of flush ids every shard remembers, enough for the flushes between a failure and its retry
+  private static final int RECENT_FLUSH_IDS = 32;
+
+  private final DatastoreService datastore;
+  private final int shardCount;
+  private final FlushThrottle flushThrottle;
+  private final long cacheMillis;
+
+  // Views of every path that were not flushed to datastore yet
+  private final Map<String, LongAdder> pendingViews = new ConcurrentHashMap<>();
+
+  // Flushes that failed and are retried as they are on the next flush
+  private final Queue<ShardFlush> failedFlushes = new ConcurrentLinkedQueue<>();
+
+  // Sum of the shards of every path, with the time it was read
+  private final Map<String, CachedTotal> cachedTotals = new ConcurrentHashMap<>();
+
+  /** Views of a path added to one shard, with the id that makes retrying them safe. */
+  private static final class ShardFlush {
+    private final String path;
+    private final long views;
+    private final int shardIndex;
+    private final String flushId;
+
+    private ShardFlush(String path, long views, int shardIndex, String flushId) {
+      this.path = path;
+      this.views = views;
+      this.shardIndex = shardIndex;
+      this.flushId = flushId;
+    }
+  }
+
+  /** A total read from datastore and when it was read. */
+  private static final class CachedTotal {
+    private final long total;
+    private final long readMillis;
+
+    private CachedTotal(long total, long readMillis) {
+      this.total = total;
+      this.readMillis = readMillis;
+    }
+  }
+
+  public PageViewCounter(DatastoreService datastore, int shardCount, long flushIntervalMillis,
+      long cacheMillis) {
+    this.datastore = datastore;
+    this.shardCount = shardCount;
+    this.flushThrottle = new FlushThrottle(flushIntervalMillis);
+    this.cacheMillis = cacheMillis;
+  }
+
+  /** Counts a view of path, flushing if the flush interval passed. */
+  public void increment(String path) {
+    pendingViews.computeIfAbsent(path, key -> new LongAdder()).increment();
+    if (flushThrottle.tryStart()) {
+      flush();
+    }
+  }
+
+  /** Returns the views of path counted by all instances, plus the local unflushed ones. */
+  public long getCount(String path) {
+    long now = System.currentTimeMillis();
+    CachedTotal cachedTotal = cachedTotals.get(path);
+    if (cachedTotal == null || now - cachedTotal.readMillis >= cacheMillis) {
+      cachedTotal = new CachedTotal(readShards(path), now);
+      cachedTotals.put(path, cachedTotal);
+    }
+
+    // Failed flushes are counted as pending, they may briefly be counted twice if they were applied
+    long pending = 0;
+    LongAdder pendingAdder = pendingViews.get(path);
+    if (pendingAdder != null) {
+      pending += pendingAdder.sum();
+    }
+    for (ShardFlush failedFlush : failedFlushes) {
+      if (failedFlush.path.equals(path)) {
+        pending += failedFlush.views;
+      }
+    }
+    return cachedTotal.total + pending;
+  }
+
+  /**
+   * Adds the local counts to datastore, retrying the flushes that failed before.
+   * Counts that could not be saved, for any reason, are retried on the next flush.
+   */
+  public synchronized void flush() {
+    List<ShardFlush> flushes = new ArrayList<>();
+    for (ShardFlush failedFlush = failedFlushes.poll(); failedFlush != null;
+        failedFlush = failedFlushes.poll()) {
+      flushes.add(failedFlush);
+    }
+    for (Map.Entry<String, LongAdder> entry : pendingViews.entrySet()) {
+      long views = entry.getValue().sumThenReset();
+      if (views > 0) {
+        flushes.add(new ShardFlush(entry.getKey(), views,
+            ThreadLocalRandom.current().nextInt(shardCount), UUID.randomUUID().toString()));
+      }
+    }
+
+    for (ShardFlush shardFlush : flushes) {
+      try {
+        addToShard(shardFlush);
+      } catch (RuntimeException e) {
+        // Another instance updated the same shard, or datastore failed, maybe after committing
+        failedFlushes.add(shardFlush);
+        continue;
+      }
+
+      // The cached total does not contain the views that were just saved
+      cachedTotals.remove(shardFlush.path);
+    }
+  }
+
+  private void addToShard(ShardFlush shardFlush) {
+    Key shardKey = createShardKey(shardFlush.path, shardFlush.shardIndex);
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity shard;
+      try {
+        shard = datastore.get(transaction, shardKey);
+      } catch (EntityNotFoundException e) {
+        shard = new Entity(shardKey);
+        shard.setProperty("count", 0L);
+      }
+
+      @SuppressWarnings("unchecked")
+      List<String> storedFlushIds = (List<String>) shard.getProperty("recentFlushIds");
+      List<String> recentFlushIds =
+          storedFlushIds == null ? new ArrayList<>() : new ArrayList<>(storedFlushIds);
+      if (recentFlushIds.contains(shardFlush.flushId)) {
+        // An earlier attempt was committed after all
+        return;
+      }
+      recentFlushIds.add(shardFlush.flushId);
+      if (recentFlushIds.size() > RECENT_FLUSH_IDS) {
+        recentFlushIds.remove(0);
+      }
+
+      shard.setProperty("count", (Long) shard.getProperty("count") + shardFlush.views);
+      shard.setUnindexedProperty("recentFlushIds", recentFlushIds);
+      datastore.put(transaction, shard);
+      transaction.commit();
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  private long readShards(String path) {
+    List<Key> shardKeys = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      shardKeys.add(createShardKey(path, i));
+    }
+
+    long total = 0;
+    for (Entity shard : datastore.get(shardKeys).values()) {
+      total += (Long) shard.getProperty("count");
+    }
+    return total;
+  }
+
+  private static Key createShardKey(String path, int shardIndex) {
+    return KeyFactory.createKey(SHARD_KIND, path + "#" + shardIndex);
+  }
+}
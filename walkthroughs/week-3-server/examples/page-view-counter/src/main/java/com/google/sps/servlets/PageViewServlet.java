@@ -14,7 +14,15 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.sps.data.PageViewCounter;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -24,14 +32,72 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/page-views")
 public class PageViewServlet extends HttpServlet {
 
-  private int pageViews = 0;
+  // More shards allow more concurrent flushes of the same page
+  private static final int SHARD_COUNT = 20;
+  private static final long FLUSH_INTERVAL_MILLIS = 10 * 1000;
+  private static final long CACHE_MILLIS = 5 * 1000;
+
+  private static final Logger logger = Logger.getLogger(PageViewServlet.class.getName());
+
+  // Set after the timer started, which reads it from its own thread
+  private volatile PageViewCounter pageViews;
+
+  // Timer flushing the views of pages nobody visits anymore, null when counting write-through
+  private ScheduledExecutorService flushScheduler;
+
+  @Override
+  public void init() {
+    // Without the timer, views are flushed on every view, since destroy() is not guaranteed to run
+    long flushIntervalMillis = startFlushScheduler() ? FLUSH_INTERVAL_MILLIS : 0;
+    pageViews = new PageViewCounter(DatastoreServiceFactory.getDatastoreService(), SHARD_COUNT,
+        flushIntervalMillis, CACHE_MILLIS);
+  }
+
+  /**
+   * Starts the background timer flushing the page views. Background threads need manual
+   * or basic scaling, returns whether the timer started.
+   */
+  private boolean startFlushScheduler() {
+    flushScheduler =
+        Executors.newSingleThreadScheduledExecutor(ThreadManager.backgroundThreadFactory());
+    try {
+      flushScheduler.scheduleWithFixedDelay(this::flushPageViews, FLUSH_INTERVAL_MILLIS,
+          FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "No background threads, page views are flushed on every view", e);
+      flushScheduler.shutdownNow();
+      flushScheduler = null;
+      return false;
+    }
+  }
+
+  /** Run by the flush timer, failures are logged so the timer keeps running. */
+  private void flushPageViews() {
+    try {
+      pageViews.flush();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Could not flush page views, retrying later", e);
+    }
+  }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    pageViews++;
+    String path = request.getRequestURI();
+    pageViews.increment(path);
 
     response.setContentType("text/html;");
     response.getWriter().println("<h1>Page Views</h1>");
-    response.getWriter().println("<p>This page has been viewed " + pageViews + " times.</p>");
+    response.getWriter().println(
+        "<p>This page has been viewed " + pageViews.getCount(path) + " times.</p>");
+  }
+
+  @Override
+  public void destroy() {
+    if (flushScheduler != null) {
+      flushScheduler.shutdownNow();
+    }
+    // Save the views that were not flushed yet
+    pageViews.flush();
   }
 }
@@ -0,0 +1,53 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class FlushThrottleTest {
+
+  @Test
+  public void startsOnlyAfterTheInterval() {
+    AtomicLong clock = new AtomicLong(1000);
+    FlushThrottle throttle = new FlushThrottle(100, clock::get);
+
+    Assert.assertFalse(throttle.tryStart());
+    clock.set(1099);
+    Assert.assertFalse(throttle.tryStart());
+    clock.set(1100);
+    Assert.assertTrue(throttle.tryStart());
+  }
+
+  @Test
+  public void startsOncePerInterval() {
+    AtomicLong clock = new AtomicLong(0);
+    FlushThrottle throttle = new FlushThrottle(100, clock::get);
+
+    clock.set(250);
+    Assert.assertTrue(throttle.tryStart());
+    Assert.assertFalse(throttle.tryStart());
+    clock.set(349);
+    Assert.assertFalse(throttle.tryStart());
+    clock.set(350);
+    Assert.assertTrue(throttle.tryStart());
+  }
+}
@@ -0,0 +1,207 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class PageViewCounterTest {
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private DatastoreService datastore;
+
+  // When true, the datastore given to the counter fails every put
+  private boolean failPuts;
+
+  // When true, transactions of the datastore given to the counter commit, then throw
+  private boolean failAfterCommit;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void countIncludesPendingAndFlushedViews() {
+    PageViewCounter counter = new PageViewCounter(datastore, 4, ONE_HOUR, 0);
+    counter.increment("/a");
+    counter.increment("/a");
+    counter.flush();
+    counter.increment("/a");
+    counter.increment("/b");
+
+    Assert.assertEquals(3, counter.getCount("/a"));
+    Assert.assertEquals(1, counter.getCount("/b"));
+    Assert.assertEquals(2, sumShards());
+  }
+
+  @Test
+  public void flushesSpreadOverTheShards() {
+    PageViewCounter counter = new PageViewCounter(datastore, 4, ONE_HOUR, 0);
+    for (int i = 0; i < 200; i++) {
+      counter.increment("/a");
+      counter.flush();
+    }
+
+    List<Entity> shards = datastore.prepare(new Query("PageViewShard"))
+        .asList(FetchOptions.Builder.withDefaults());
+    Assert.assertTrue(shards.size() > 1);
+    Assert.assertTrue(shards.size() <= 4);
+    Assert.assertEquals(200, sumShards());
+    Assert.assertEquals(200, counter.getCount("/a"));
+  }
+
+  @Test
+  public void otherCountersSeeFlushedViews() {
+    PageViewCounter counter = new PageViewCounter(datastore, 4, ONE_HOUR, 0);
+    PageViewCounter otherCounter = new PageViewCounter(datastore, 4, ONE_HOUR, 0);
+    counter.increment("/a");
+    otherCounter.increment("/a");
+
+    counter.flush();
+
+    Assert.assertEquals(2, otherCounter.getCount("/a"));
+  }
+
+  @Test
+  public void failedFlushKeepsViewsPending() {
+    PageViewCounter counter = new PageViewCounter(failingDatastore(), 4, ONE_HOUR, 0);
+    counter.increment("/a");
+    counter.increment("/a");
+
+    failPuts = true;
+    counter.flush();
+
+    Assert.assertEquals(0, sumShards());
+    Assert.assertEquals(2, counter.getCount("/a"));
+
+    failPuts = false;
+    counter.flush();
+
+    Assert.assertEquals(2, sumShards());
+    Assert.assertEquals(2, counter.getCount("/a"));
+  }
+
+  @Test
+  public void retryingAFlushThatWasCommittedDoesNotCountTwice() {
+    PageViewCounter counter = new PageViewCounter(failingDatastore(), 4, ONE_HOUR, 0);
+    counter.increment("/a");
+    counter.increment("/a");
+
+    failAfterCommit = true;
+    counter.flush();
+
+    Assert.assertEquals(2, sumShards());
+
+    failAfterCommit = false;
+    counter.increment("/a");
+    counter.flush();
+
+    Assert.assertEquals(3, sumShards());
+    Assert.assertEquals(3, counter.getCount("/a"));
+  }
+
+  @Test
+  public void failedFlushesAreRetriedOnTheSameShard() {
+    PageViewCounter counter = new PageViewCounter(failingDatastore(), 20, ONE_HOUR, 0);
+    for (int i = 0; i < 10; i++) {
+      counter.increment("/a");
+      failPuts = true;
+      counter.flush();
+    }
+
+    failPuts = false;
+    counter.flush();
+
+    Assert.assertEquals(10, sumShards());
+    Assert.assertEquals(10, counter.getCount("/a"));
+  }
+
+  private long sumShards() {
+    long total = 0;
+    for (Entity shard : datastore.prepare(new Query("PageViewShard")).asIterable()) {
+      total += (Long) shard.getProperty("count");
+    }
+    return total;
+  }
+
+  /** Returns the local datastore, failing puts with DatastoreFailureException while failPuts */
+  private DatastoreService failingDatastore() {
+    return (DatastoreService) Proxy.newProxyInstance(
+        DatastoreService.class.getClassLoader(),
+        new Class<?>[] {DatastoreService.class},
+        (proxy, method, args) -> {
+          if (failPuts && method.getName().equals("put")) {
+            throw new DatastoreFailureException("Injected failure");
+          }
+          Object result = invoke(datastore, method, args);
+          return method.getName().equals("beginTransaction")
+              ? failingTransaction((Transaction) result)
+              : result;
+        });
+  }
+
+  /** Returns transaction, throwing DatastoreTimeoutException after commit while failAfterCommit */
+  private Transaction failingTransaction(Transaction transaction) {
+    return (Transaction) Proxy.newProxyInstance(
+        Transaction.class.getClassLoader(),
+        new Class<?>[] {Transaction.class},
+        (proxy, method, args) -> {
+          Object result = invoke(transaction, method, args);
+          if (failAfterCommit && method.getName().equals("commit")) {
+            throw new DatastoreTimeoutException("Injected failure after commit");
+          }
+          return result;
+        });
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
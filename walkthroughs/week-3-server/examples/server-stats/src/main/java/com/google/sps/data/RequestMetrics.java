@@ -0,0 +1,125 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** 
+ * Class containing the request metrics of every servlet URL pattern
+ * Patterns come from the servlet mappings, so the number of entries stays bounded
+ */
+public final class RequestMetrics {
+
+  // Quantiles reported for the latency of every pattern
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+  private static final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+  private RequestMetrics() {}
+
+  /** Class containing the metrics of a single URL pattern */
+  public static final class EndpointMetrics {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /** 
+     * Method called when a request starts
+     */
+    public void started() {
+      inFlight.increment();
+    }
+
+    /** 
+     * Method called when a request ended, failed is true for exceptions and 5xx responses
+     */
+    public void finished(long micros, boolean failed) {
+      latency.record(micros);
+      finished(failed);
+    }
+
+    /** 
+     * Method called when a request whose latency is not meaningful ended, like a long poll
+     */
+    public void finished(boolean failed) {
+      inFlight.decrement();
+      if (failed) {
+        errors.increment();
+      }
+    }
+  }
+
+  /** 
+   * Method that returns the metrics of pattern, creating them on first use
+   */
+  public static EndpointMetrics forPattern(String pattern) {
+    return endpoints.computeIfAbsent(pattern, key -> new EndpointMetrics());
+  }
+
+  /** 
+   * Method that writes the metrics of every pattern in the Prometheus text format
+   */
+  public static void writePrometheus(PrintWriter out) {
+    Map<String, EndpointMetrics> sortedEndpoints = new TreeMap<>(endpoints);
+
+    out.println("# HELP http_request_duration_seconds Latency of the requests per servlet pattern.");
+    out.println("# TYPE http_request_duration_seconds summary");
+    for (Map.Entry<String, EndpointMetrics> entry : sortedEndpoints.entrySet()) {
+      String label = "pattern=\"" + escapeLabelValue(entry.getKey()) + "\"";
+      LatencyHistogram latency = entry.getValue().latency;
+      long count = latency.getCount();
+      if (count == 0) {
+        continue;
+      }
+      long[] quantileMicros = latency.getQuantileMicros(QUANTILES);
+      for (int i = 0; i < QUANTILES.length; i++) {
+        out.println("http_request_duration_seconds{" + label + ",quantile=\"" + QUANTILES[i]
+            + "\"} " + toSeconds(quantileMicros[i]));
+      }
+      out.println("http_request_duration_seconds_sum{" + label + "} "
+          + toSeconds(latency.getTotalMicros()));
+      out.println("http_request_duration_seconds_count{" + label + "} " + count);
+    }
+
+    out.println("# HELP http_requests_in_flight Requests being handled per servlet pattern.");
+    out.println("# TYPE http_requests_in_flight gauge");
+    for (Map.Entry<String, EndpointMetrics> entry : sortedEndpoints.entrySet()) {
+      out.println("http_requests_in_flight{pattern=\"" + escapeLabelValue(entry.getKey()) + "\"} "
+          + entry.getValue().inFlight.sum());
+    }
+
+    out.println("# HELP http_request_errors_total Requests that failed with an exception or 5xx.");
+    out.println("# TYPE http_request_errors_total counter");
+    for (Map.Entry<String, EndpointMetrics> entry : sortedEndpoints.entrySet()) {
+      out.println("http_request_errors_total{pattern=\"" + escapeLabelValue(entry.getKey())
+          + "\"} " + entry.getValue().errors.sum());
+    }
+  }
+
+  private static double toSeconds(long micros) {
+    return micros / 1e6;
+  }
+
+  /** 
+   * Method that escapes backslashes, quotes and newlines as the text format requires
+   */
+  private static String escapeLabelValue(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.sps.data;
 
 import java.util.Date;
+import java.util.List;
 
 /** Class containing server statistics. */
 public final class ServerStats {
@@ -23,12 +24,33 @@ public final class ServerStats {
   private final Date currentTime;
   private final long maxMemory;
   private final long usedMemory;
+  private final List<MemoryPoolStats> heapPools;
+  private final List<GarbageCollectorStats> garbageCollectors;
+  private final ThreadStats threads;
+  private final double processCpuLoad;
+  private final double systemCpuLoad;
+  private final long allocatedBytesPerSecond;
+  private final int loadedClassCount;
 
   public ServerStats(Date startTime, Date currentTime, long maxMemory, long usedMemory) {
+    this(startTime, currentTime, maxMemory, usedMemory, null, null, null, -1, -1, -1, -1);
+  }
+
+  public ServerStats(Date startTime, Date currentTime, long maxMemory, long usedMemory,
+      List<MemoryPoolStats> heapPools, List<GarbageCollectorStats> garbageCollectors,
+      ThreadStats threads, double processCpuLoad, double systemCpuLoad,
+      long allocatedBytesPerSecond, int loadedClassCount) {
     this.startTime = startTime;
     this.currentTime = currentTime;
     this.maxMemory = maxMemory;
     this.usedMemory = usedMemory;
+    this.heapPools = heapPools;
+    this.garbageCollectors = garbageCollectors;
+    this.threads = threads;
+    this.processCpuLoad = processCpuLoad;
+    this.systemCpuLoad = systemCpuLoad;
+    this.allocatedBytesPerSecond = allocatedBytesPerSecond;
+    this.loadedClassCount = loadedClassCount;
   }
 
   public Date getStartTime() {
@@ -46,4 +68,134 @@ public final class ServerStats {
   public long getUsedMemory() {
     return usedMemory;
   }
+
+  public List<MemoryPoolStats> getHeapPools() {
+    return heapPools;
+  }
+
+  public List<GarbageCollectorStats> getGarbageCollectors() {
+    return garbageCollectors;
+  }
+
+  public ThreadStats getThreads() {
+    return threads;
+  }
+
+  /** Returns the recent CPU usage of this JVM between 0 and 1, or -1 if unknown. */
+  public double getProcessCpuLoad() {
+    return processCpuLoad;
+  }
+
+  /** Returns the recent CPU usage of the whole machine between 0 and 1, or -1 if unknown. */
+  public double getSystemCpuLoad() {
+    return systemCpuLoad;
+  }
+
+  /** Returns the bytes allocated per second since the previous sample, or -1 if unknown. */
+  public long getAllocatedBytesPerSecond() {
+    return allocatedBytesPerSecond;
+  }
+
+  public int getLoadedClassCount() {
+    return loadedClassCount;
+  }
+
+  /** Class containing the usage of a heap memory pool. */
+  public static final class MemoryPoolStats {
+    private final String name;
+    private final long used;
+    private final long committed;
+    private final long max;
+
+    public MemoryPoolStats(String name, long used, long committed, long max) {
+      this.name = name;
+      this.used = used;
+      this.committed = committed;
+      this.max = max;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getUsed() {
+      return used;
+    }
+
+    public long getCommitted() {
+      return committed;
+    }
+
+    /** Returns the maximum size of the pool, or -1 if it is undefined. */
+    public long getMax() {
+      return max;
+    }
+  }
+
+  /** Class containing the activity of a garbage collector. */
+  public static final class GarbageCollectorStats {
+    private final String name;
+    private final long collectionCount;
+    private final long collectionTimeMillis;
+    private final long recentCollectionCount;
+    private final long recentCollectionTimeMillis;
+
+    public GarbageCollectorStats(String name, long collectionCount, long collectionTimeMillis,
+        long recentCollectionCount, long recentCollectionTimeMillis) {
+      this.name = name;
+      this.collectionCount = collectionCount;
+      this.collectionTimeMillis = collectionTimeMillis;
+      this.recentCollectionCount = recentCollectionCount;
+      this.recentCollectionTimeMillis = recentCollectionTimeMillis;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the number of collections since the JVM started. */
+    public long getCollectionCount() {
+      return collectionCount;
+    }
+
+    /** Returns the time spent collecting since the JVM started. */
+    public long getCollectionTimeMillis() {
+      return collectionTimeMillis;
+    }
+
+    /** Returns the number of collections since the previous sample. */
+    public long getRecentCollectionCount() {
+      return recentCollectionCount;
+    }
+
+    /** Returns the time spent collecting since the previous sample. */
+    public long getRecentCollectionTimeMillis() {
+      return recentCollectionTimeMillis;
+    }
+  }
+
+  /** Class containing thread counts. */
+  public static final class ThreadStats {
+    private final int threadCount;
+    private final int daemonThreadCount;
+    private final int peakThreadCount;
+
+    public ThreadStats(int threadCount, int daemonThreadCount, int peakThreadCount) {
+      this.threadCount = threadCount;
+      this.daemonThreadCount = daemonThreadCount;
+      this.peakThreadCount = peakThreadCount;
+    }
+
+    public int getThreadCount() {
+      return threadCount;
+    }
+
+    public int getDaemonThreadCount() {
+      return daemonThreadCount;
+    }
+
+    public int getPeakThreadCount() {
+      return peakThreadCount;
+    }
+  }
 }
@@ -0,0 +1,237 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples JVM statistics from the java.lang.management MXBeans on a background thread.
+ *
+ * Every sample is serialized to JSON right away together with a bounded history of
+ * earlier samples, so reading the statistics costs nothing but returning a string.
+ * Where background threads are not allowed, samples are taken by the reading request
+ * instead, at most once per interval. A sample that fails is logged and skipped, so the
+ * next ones still run.
+ */
+public final class ServerStatsSampler {
+
+  private static final Logger logger = Logger.getLogger(ServerStatsSampler.class.getName());
+
+  private final Gson gson = new Gson();
+  private final long intervalMillis;
+  private final int historySize;
+  private final LongSupplier clock;
+  private final Date startTime;
+
+  private ScheduledExecutorService scheduler;
+
+  // Guarded by this
+  private final Deque<HistoryPoint> history = new ArrayDeque<>();
+  private final Map<String, long[]> previousCollections = new HashMap<>();
+  private long previousAllocatedBytes = -1;
+  private long previousSampleMillis;
+
+  private volatile String json;
+  private volatile long lastSampleMillis;
+
+  /** A few statistics of one sample, kept to show how they changed. */
+  private static final class HistoryPoint {
+    private final long time;
+    private final long usedMemory;
+    private final double processCpuLoad;
+    private final long allocatedBytesPerSecond;
+    private final long collectionTimeMillis;
+    private final int threadCount;
+
+    private HistoryPoint(long time, long usedMemory, double processCpuLoad,
+        long allocatedBytesPerSecond, long collectionTimeMillis, int threadCount) {
+      this.time = time;
+      this.usedMemory = usedMemory;
+      this.processCpuLoad = processCpuLoad;
+      this.allocatedBytesPerSecond = allocatedBytesPerSecond;
+      this.collectionTimeMillis = collectionTimeMillis;
+      this.threadCount = threadCount;
+    }
+  }
+
+  public ServerStatsSampler(long intervalMillis, int historySize) {
+    this(intervalMillis, historySize, System::currentTimeMillis);
+  }
+
+  /** Creates a sampler that reads the time of every sample from clock. */
+  ServerStatsSampler(long intervalMillis, int historySize, LongSupplier clock) {
+    this.intervalMillis = intervalMillis;
+    this.historySize = historySize;
+    this.clock = clock;
+    this.startTime = new Date(clock.getAsLong());
+  }
+
+  /** Takes the first sample and schedules the next ones. */
+  public void start() {
+    sample();
+    try {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "server-stats-sampler");
+        thread.setDaemon(true);
+        return thread;
+      });
+      // An exception escaping the task would cancel all the later runs
+      scheduler.scheduleAtFixedRate(this::sampleAndLogFailures, intervalMillis, intervalMillis,
+          TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      // Background threads are not allowed, getJson() samples instead
+      scheduler = null;
+    }
+  }
+
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /** Returns the latest sample and the history as JSON. */
+  public String getJson() {
+    if (scheduler == null && clock.getAsLong() - lastSampleMillis >= intervalMillis) {
+      synchronized (this) {
+        if (clock.getAsLong() - lastSampleMillis >= intervalMillis) {
+          sampleAndLogFailures();
+        }
+      }
+    }
+    return json;
+  }
+
+  /** Takes a sample, logging instead of throwing if it fails. */
+  private void sampleAndLogFailures() {
+    try {
+      sample();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Sampling server stats failed", e);
+    }
+  }
+
+  private synchronized void sample() {
+    long now = clock.getAsLong();
+    long elapsedMillis = now - previousSampleMillis;
+
+    // Memory
+    Runtime runtime = Runtime.getRuntime();
+    long maxMemory = runtime.maxMemory();
+    long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+    List<ServerStats.MemoryPoolStats> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        heapPools.add(new ServerStats.MemoryPoolStats(pool.getName(), pool.getUsage().getUsed(),
+            pool.getUsage().getCommitted(), pool.getUsage().getMax()));
+      }
+    }
+
+    // Garbage collections since the JVM started and since the previous sample
+    List<ServerStats.GarbageCollectorStats> garbageCollectors = new ArrayList<>();
+    long recentCollectionTimeMillis = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      long count = Math.max(collector.getCollectionCount(), 0);
+      long timeMillis = Math.max(collector.getCollectionTime(), 0);
+      long[] previous = previousCollections.getOrDefault(collector.getName(), new long[2]);
+      previousCollections.put(collector.getName(), new long[] {count, timeMillis});
+
+      recentCollectionTimeMillis += timeMillis - previous[1];
+      garbageCollectors.add(new ServerStats.GarbageCollectorStats(collector.getName(), count,
+          timeMillis, count - previous[0], timeMillis - previous[1]));
+    }
+
+    // Threads and bytes they allocated since the previous sample
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    ServerStats.ThreadStats threads = new ServerStats.ThreadStats(threadBean.getThreadCount(),
+        threadBean.getDaemonThreadCount(), threadBean.getPeakThreadCount());
+    long allocatedBytes = getAllocatedBytes(threadBean);
+    long allocatedBytesPerSecond = -1;
+    if (allocatedBytes >= 0 && previousAllocatedBytes >= 0 && elapsedMillis > 0) {
+      // Bytes of threads that ended are not counted anymore, so the difference can be negative
+      allocatedBytesPerSecond =
+          Math.max(allocatedBytes - previousAllocatedBytes, 0) * 1000 / elapsedMillis;
+    }
+    previousAllocatedBytes = allocatedBytes;
+
+    // CPU
+    double processCpuLoad = -1;
+    double systemCpuLoad = -1;
+    OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      processCpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+      systemCpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getSystemCpuLoad();
+    }
+
+    int loadedClassCount = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+
+    ServerStats serverStats = new ServerStats(startTime, new Date(now), maxMemory, usedMemory,
+        heapPools, garbageCollectors, threads, processCpuLoad, systemCpuLoad,
+        allocatedBytesPerSecond, loadedClassCount);
+
+    // Keep the last historySize samples
+    history.addLast(new HistoryPoint(now, usedMemory, processCpuLoad, allocatedBytesPerSecond,
+        recentCollectionTimeMillis, threads.getThreadCount()));
+    if (history.size() > historySize) {
+      history.removeFirst();
+    }
+
+    JsonObject jsonObject = gson.toJsonTree(serverStats).getAsJsonObject();
+    jsonObject.add("history", gson.toJsonTree(history));
+    json = gson.toJson(jsonObject);
+    previousSampleMillis = now;
+    lastSampleMillis = now;
+  }
+
+  /** Returns the bytes allocated by all live threads, or -1 if the JVM does not tell. */
+  private static long getAllocatedBytes(ThreadMXBean threadBean) {
+    if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+    if (!allocationBean.isThreadAllocatedMemorySupported()
+        || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+
+    long total = 0;
+    for (long bytes : allocationBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+      if (bytes > 0) {
+        total += bytes;
+      }
+    }
+    return total;
+  }
+}
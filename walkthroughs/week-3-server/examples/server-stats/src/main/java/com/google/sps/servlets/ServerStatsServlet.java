@@ -14,10 +14,10 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.data.ServerStats;
 import com.google.gson.Gson;
+import com.google.sps.data.ServerStats;
+import com.google.sps.data.ServerStatsSampler;
 import java.io.IOException;
-import java.util.Date;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -26,26 +26,36 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/server-stats")
 public final class ServerStatsServlet extends HttpServlet {
 
-  private final Date startTime = new Date();
+  // Sample every 5 seconds and keep the last 5 minutes
+  private static final long SAMPLE_INTERVAL_MILLIS = 5 * 1000;
+  private static final int HISTORY_SIZE = 60;
+
+  private final ServerStatsSampler sampler =
+      new ServerStatsSampler(SAMPLE_INTERVAL_MILLIS, HISTORY_SIZE);
 
   @Override
-  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // Calculate server stats
-    Date currentTime = new Date();
-    long maxMemory = Runtime.getRuntime().maxMemory();
-    long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+  public void init() {
+    sampler.start();
+  }
 
-    // Convert the server stats to JSON
-    ServerStats serverStats = new ServerStats(startTime, currentTime, maxMemory, usedMemory);
-    String json = convertToJson(serverStats);
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // The stats were already sampled and converted to JSON in the background
+    String json = sampler.getJson();
 
     // Send the JSON as the response
     response.setContentType("application/json;");
     response.getWriter().println(json);
   }
 
+  @Override
+  public void destroy() {
+    sampler.stop();
+  }
+
   /**
    * Converts a ServerStats instance into a JSON string using manual String concatentation.
+   * Only the basic stats are included, the sampler converts all of them with Gson.
    */
   private String convertToJson(ServerStats serverStats) {
     String json = "{";
@@ -30,6 +30,25 @@ function getServerStats() {
         createListElement('Max memory: ' + stats.maxMemory));
     statsListElement.appendChild(
         createListElement('Used memory: ' + stats.usedMemory));
+    stats.heapPools.forEach((pool) => {
+      statsListElement.appendChild(createListElement(
+          'Heap pool ' + pool.name + ': ' + pool.used + ' used of ' + pool.committed));
+    });
+    stats.garbageCollectors.forEach((collector) => {
+      statsListElement.appendChild(createListElement(
+          'GC ' + collector.name + ': ' + collector.collectionCount + ' collections in ' +
+          collector.collectionTimeMillis + ' ms'));
+    });
+    statsListElement.appendChild(
+        createListElement('Threads: ' + stats.threads.threadCount));
+    statsListElement.appendChild(
+        createListElement('Process CPU load: ' + stats.processCpuLoad));
+    statsListElement.appendChild(createListElement(
+        'Allocation rate: ' + stats.allocatedBytesPerSecond + ' bytes/s'));
+    statsListElement.appendChild(
+        createListElement('Loaded classes: ' + stats.loadedClassCount));
+    statsListElement.appendChild(
+        createListElement('Samples in history: ' + stats.history.length));
   });
 }
 
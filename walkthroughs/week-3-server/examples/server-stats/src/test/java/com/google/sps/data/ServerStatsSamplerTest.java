@@ -0,0 +1,103 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class ServerStatsSamplerTest {
+
+  @Test
+  public void jsonHasTheStatsAndABoundedHistory() throws InterruptedException {
+    ServerStatsSampler sampler = new ServerStatsSampler(5, 3);
+    sampler.start();
+    try {
+      waitForHistory(sampler, 3);
+      Thread.sleep(50);
+
+      JsonObject json = parse(sampler);
+      Assert.assertTrue(json.get("usedMemory").getAsLong() > 0);
+      Assert.assertTrue(json.getAsJsonObject("threads").get("threadCount").getAsInt() > 0);
+      Assert.assertEquals(3, json.getAsJsonArray("history").size());
+    } finally {
+      sampler.stop();
+    }
+  }
+
+  @Test
+  public void keepsSamplingAfterAFailedSample() throws InterruptedException {
+    AtomicBoolean failing = new AtomicBoolean(false);
+    ServerStatsSampler sampler = new ServerStatsSampler(5, 100, () -> {
+      if (failing.get()) {
+        throw new IllegalStateException("Injected failure");
+      }
+      return System.currentTimeMillis();
+    });
+    sampler.start();
+    try {
+      failing.set(true);
+      Thread.sleep(50);
+      int historyAfterFailures = history(sampler);
+
+      failing.set(false);
+      waitForHistory(sampler, historyAfterFailures + 2);
+    } finally {
+      sampler.stop();
+    }
+  }
+
+  @Test
+  public void readersSampleAtMostOncePerInterval() {
+    AtomicLong now = new AtomicLong(1000);
+    ServerStatsSampler sampler = new ServerStatsSampler(100, 10, now::get);
+
+    // Without start() there is no background thread, so getJson samples
+    sampler.getJson();
+    sampler.getJson();
+    Assert.assertEquals(1, history(sampler));
+
+    now.set(1099);
+    Assert.assertEquals(1, history(sampler));
+    now.set(1200);
+    Assert.assertEquals(2, history(sampler));
+  }
+
+  private static JsonObject parse(ServerStatsSampler sampler) {
+    return JsonParser.parseString(sampler.getJson()).getAsJsonObject();
+  }
+
+  private static int history(ServerStatsSampler sampler) {
+    return parse(sampler).getAsJsonArray("history").size();
+  }
+
+  /** Waits up to 5 seconds for the history to reach size, failing otherwise */
+  private static void waitForHistory(ServerStatsSampler sampler, int size)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (history(sampler) < size) {
+      Assert.assertTrue("History stayed below " + size, System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+  }
+}
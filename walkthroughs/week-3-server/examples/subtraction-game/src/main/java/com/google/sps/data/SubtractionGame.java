@@ -19,27 +19,142 @@ import java.util.List;
 
 /**
  * Class representing the subtraction game, where players take turns subtracting from 21 to reach 0.
+ * Players subtract 1, 2 or 3 by default; other starting totals and limits can be configured.
  *
- * <p>Note: The private variables in this class are converted into JSON.
+ * <p>Note: The game is converted into JSON through SubtractionGameState.
+ *
+ * <p>A game can be played from several request threads at once, so its methods are
+ * synchronized.
  */
 public class SubtractionGame {
 
-  /** List of descriptions of turns, e.g. "Player 1 took 3. New total: 18" */
-  private final List<String> history = new ArrayList<>();
+  /**
+   * Most history lines kept per game, whatever the starting total.
+   * Games from a bigger total drop their oldest lines once they have this many.
+   */
+  private static final int MAX_HISTORY_CAPACITY = 512;
+
+  /**
+   * Ring of descriptions of turns, e.g. "Player 1 took 3. New total: 18".
+   * The line with index i is at i % history.length. Indexes keep growing across rematches.
+   * It is sized for a whole game: every move takes at least 1 and writes 2 lines,
+   * and the end of the game writes 2 more, up to MAX_HISTORY_CAPACITY.
+   */
+  private final String[] history;
+
+  /** Index of the oldest history line of the current game that is still kept. */
+  private long firstHistoryIndex = 0;
+
+  /** Index the next history line will get. */
+  private long nextHistoryIndex = 0;
+
+  /** The total every game starts from. */
+  private final int startingTotal;
+
+  /** The most a player can subtract in one turn. */
+  private final int maxTake;
+
+  /** Knows the best move of the computer from every total. */
+  private final SubtractionSolver solver;
 
   /** The total of the current turn. */
-  private int currentTotal = 21;
+  private int currentTotal;
 
   /** Whether this game has ended, i.e. one of the players reached 0. */
   private boolean gameOver = false;
 
+  public SubtractionGame() {
+    this(21, 3);
+  }
+
+  /**
+   * Creates a game starting from startingTotal where players subtract between 1 and maxTake.
+   * Throws IllegalArgumentException if startingTotal is less than 1 or maxTake is not
+   * between 1 and SubtractionSolver.MAX_TAKE_LIMIT.
+   */
+  public SubtractionGame(int startingTotal, int maxTake) {
+    checkSettings(startingTotal, maxTake);
+    this.startingTotal = startingTotal;
+    this.maxTake = maxTake;
+    this.solver = SubtractionSolver.forMaxTake(maxTake);
+    this.currentTotal = startingTotal;
+    this.history = new String[(int) Math.min(2L * startingTotal + 2, MAX_HISTORY_CAPACITY)];
+  }
+
+  /** Throws IllegalArgumentException if a game can't be created with these settings. */
+  static void checkSettings(int startingTotal, int maxTake) {
+    if (startingTotal < 1) {
+      throw new IllegalArgumentException("startingTotal must be at least 1");
+    }
+    if (maxTake < 1 || maxTake > SubtractionSolver.MAX_TAKE_LIMIT) {
+      throw new IllegalArgumentException(
+          "maxTake must be between 1 and " + SubtractionSolver.MAX_TAKE_LIMIT);
+    }
+  }
+
+  /** Returns the most a player can subtract in one turn. */
+  public int getMaxTake() {
+    return maxTake;
+  }
+
   /** Returns whether this game has ended. */
-  public boolean isGameOver() {
+  public synchronized boolean isGameOver() {
     return gameOver;
   }
 
-  /** Takes the player's turn, subtracting `playerChoice` from the total. */
-  public void takePlayerTurn(int playerChoice) {
+  /** Returns the total of the current turn. */
+  public synchronized int getCurrentTotal() {
+    return currentTotal;
+  }
+
+  /** Returns a copy of the descriptions of turns that are kept. */
+  public synchronized List<String> getHistory() {
+    return getHistorySince(firstHistoryIndex);
+  }
+
+  /**
+   * Returns the state of this game with the history lines from index sinceIndex on.
+   * If lines from sinceIndex belong to an earlier game, or were dropped from the ring
+   * because the game is longer than MAX_HISTORY_CAPACITY lines, the history starts at the
+   * oldest line kept instead. The state's fromIndex is then greater than sinceIndex,
+   * which tells the player to replace the history they show rather than append to it.
+   */
+  public synchronized SubtractionGameState getState(long sinceIndex) {
+    long fromIndex = Math.min(Math.max(sinceIndex, firstHistoryIndex), nextHistoryIndex);
+    return new SubtractionGameState(currentTotal, gameOver, getHistorySince(fromIndex),
+        fromIndex, nextHistoryIndex);
+  }
+
+  /** Starts this game over if it has ended. */
+  public synchronized void restartIfOver() {
+    if (gameOver) {
+      // Skip an index, so players polling since the end of the old game see a new history
+      nextHistoryIndex++;
+      firstHistoryIndex = nextHistoryIndex;
+      currentTotal = startingTotal;
+      gameOver = false;
+    }
+  }
+
+  /**
+   * Starts this game over if it has ended, then takes the player's turn.
+   * Doing both under one lock keeps two players' moves from both passing the restart
+   * and the second one landing on the game the first one just finished.
+   */
+  public synchronized void restartIfOverAndTakePlayerTurn(int playerChoice) {
+    restartIfOver();
+    takePlayerTurn(playerChoice);
+  }
+
+  /**
+   * Takes the player's turn, subtracting `playerChoice` from the total.
+   * Returns false without a move if the game has already ended.
+   */
+  public synchronized boolean takePlayerTurn(int playerChoice) {
+    if (gameOver) {
+      return false;
+    }
+
     currentTotal -= playerChoice;
     if (currentTotal < 0) {
       currentTotal = 0;
@@ -48,38 +163,51 @@ public class SubtractionGame {
 
     if (currentTotal == 0) {
       // Player 1 won
-      history.add("Player 1 won!");
-      history.add("I want a rematch!");
+      addHistory("Player 1 won!");
+      addHistory("I want a rematch!");
       gameOver = true;
     } else {
       takeComputerTurn();
     }
+    return true;
   }
 
   private void takeComputerTurn() {
-    int computerChoice;
-    if (currentTotal <= 3) {
-      // If the current total is 1, 2, or 3, then the computer can win this turn
-      // by subtracting the current total.
-      computerChoice = currentTotal;
-    } else {
-      // The computer can't win this turn,
-      // so generate a random number between 1 and 3 inclusive.
-      computerChoice = 1 + (int) (Math.random() * 3);
+    // Leave the player at a total they lose from, if there is such a move.
+    int computerChoice = solver.getBestMove(currentTotal);
+    if (computerChoice == 0) {
+      // The computer loses if the player plays well,
+      // so generate a random number between 1 and the most it can take.
+      computerChoice = 1 + (int) (Math.random() * Math.min(maxTake, currentTotal));
     }
 
     currentTotal -= computerChoice;
     logMove("Computer", computerChoice, currentTotal);
 
     if (currentTotal == 0) {
-      history.add("Computer won!");
-      history.add("Want a rematch?");
+      addHistory("Computer won!");
+      addHistory("Want a rematch?");
       gameOver = true;
     }
   }
 
   private void logMove(String player, int choice, int newTotal) {
-    history.add(player + " subtracted " + choice);
-    history.add("New total: " + newTotal);
+    addHistory(player + " subtracted " + choice);
+    addHistory("New total: " + newTotal);
+  }
+
+  private void addHistory(String line) {
+    history[(int) (nextHistoryIndex % history.length)] = line;
+    nextHistoryIndex++;
+    // The line just written replaced the oldest one once the ring is full
+    firstHistoryIndex = Math.max(firstHistoryIndex, nextHistoryIndex - history.length);
+  }
+
+  private List<String> getHistorySince(long fromIndex) {
+    List<String> lines = new ArrayList<>();
+    for (long index = fromIndex; index < nextHistoryIndex; index++) {
+      lines.add(history[(int) (index % history.length)]);
+    }
+    return lines;
   }
 }
@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class holding one SubtractionGame per player, keyed by session id.
+ *
+ * <p>Games are spread over segments with a lock each, so looking up games of different
+ * players rarely waits. Every segment keeps its games in least recently used order,
+ * dropping games idle for longer than idleMillis and the oldest one when it is full.
+ */
+public final class SubtractionGameRegistry {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+  private final long idleMillis;
+  private final int startingTotal;
+  private final int maxTake;
+
+  /** A game and when its player last used it. */
+  private static final class GameEntry {
+    private final SubtractionGame game;
+    private long lastAccessMillis;
+
+    private GameEntry(SubtractionGame game) {
+      this.game = game;
+    }
+  }
+
+  /** Games whose session ids hash to the same segment. */
+  private final class Segment {
+    private final Map<String, GameEntry> games;
+
+    private Segment(int maxGames) {
+      games = new LinkedHashMap<String, GameEntry>(16, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GameEntry> eldest) {
+          return size() > maxGames;
+        }
+      };
+    }
+
+    private synchronized SubtractionGame getOrCreate(String sessionId, long now) {
+      // The least recently used games come first, stop at the first one still in use
+      Iterator<GameEntry> iterator = games.values().iterator();
+      while (iterator.hasNext() && now - iterator.next().lastAccessMillis > idleMillis) {
+        iterator.remove();
+      }
+
+      GameEntry entry = games.computeIfAbsent(
+          sessionId, key -> new GameEntry(new SubtractionGame(startingTotal, maxTake)));
+      entry.lastAccessMillis = now;
+      return entry.game;
+    }
+
+    private synchronized int size() {
+      return games.size();
+    }
+  }
+
+  /** Creates a registry of games starting from 21 where players subtract 1, 2 or 3. */
+  public SubtractionGameRegistry(int maxGames, long idleMillis) {
+    this(maxGames, idleMillis, 21, 3);
+  }
+
+  /**
+   * Creates a registry of games starting from startingTotal where players subtract between
+   * 1 and maxTake. Throws IllegalArgumentException for settings SubtractionGame rejects.
+   */
+  public SubtractionGameRegistry(int maxGames, long idleMillis, int startingTotal, int maxTake) {
+    SubtractionGame.checkSettings(startingTotal, maxTake);
+    this.idleMillis = idleMillis;
+    this.startingTotal = startingTotal;
+    this.maxTake = maxTake;
+    int maxGamesPerSegment = Math.max(1, maxGames / SEGMENT_COUNT);
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(maxGamesPerSegment);
+    }
+  }
+
+  /** Returns the game of sessionId, starting a new one if it has none. */
+  public SubtractionGame getGame(String sessionId) {
+    return segmentFor(sessionId).getOrCreate(sessionId, System.currentTimeMillis());
+  }
+
+  /** Returns the number of games held. */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private Segment segmentFor(String sessionId) {
+    // Spread the hash bits like HashMap does before picking a segment
+    int hash = sessionId.hashCode();
+    return segments[((hash ^ (hash >>> 16)) & 0x7fffffff) % SEGMENT_COUNT];
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * Class containing the state of a SubtractionGame sent to the player.
+ *
+ * <p>Note: The private variables in this class are converted into JSON.
+ */
+public final class SubtractionGameState {
+
+  /** The total of the current turn. */
+  private final int currentTotal;
+
+  /** Whether the game has ended. */
+  private final boolean gameOver;
+
+  /** History lines with indexes from fromIndex to nextIndex - 1. */
+  private final List<String> history;
+
+  /** Index of the first line in history. */
+  private final long fromIndex;
+
+  /** Index the next history line will get, the since parameter of the next poll. */
+  private final long nextIndex;
+
+  public SubtractionGameState(int currentTotal, boolean gameOver, List<String> history,
+      long fromIndex, long nextIndex) {
+    this.currentTotal = currentTotal;
+    this.gameOver = gameOver;
+    this.history = history;
+    this.fromIndex = fromIndex;
+    this.nextIndex = nextIndex;
+  }
+
+  public int getCurrentTotal() {
+    return currentTotal;
+  }
+
+  public boolean isGameOver() {
+    return gameOver;
+  }
+
+  public List<String> getHistory() {
+    return history;
+  }
+
+  public long getFromIndex() {
+    return fromIndex;
+  }
+
+  public long getNextIndex() {
+    return nextIndex;
+  }
+}
@@ -0,0 +1,150 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that knows the winning move from every total of a subtraction game.
+ *
+ * <p>Players subtract between 1 and maxTake; the player who reaches 0 wins. A total is
+ * losing for the player to move if every move leads to a winning total. Totals are solved
+ * in increasing order by dynamic programming into a bit table. Whether a total is losing
+ * only depends on the last maxTake totals, so once those bits repeat the table repeats
+ * too, and solving stops. Any total, however large, then maps into the table in O(1).
+ *
+ * <p>Solvers are immutable and shared by all games with the same maxTake.
+ */
+public final class SubtractionSolver {
+
+  /** The largest maxTake, so the last maxTake results fit in a long. */
+  public static final int MAX_TAKE_LIMIT = 64;
+
+  private static final Map<Integer, SubtractionSolver> solvers = new ConcurrentHashMap<>();
+
+  private final int maxTake;
+
+  /** Bit n is set if total n is losing for the player to move. */
+  private final long[] losing;
+
+  /** The winning move from every total in the table, 0 for losing totals. */
+  private final byte[] bestMoves;
+
+  /** Totals after cycleStart repeat every cycleLength totals. */
+  private final int cycleStart;
+  private final int cycleLength;
+
+  /** Returns the solver for games where players subtract between 1 and maxTake. */
+  public static SubtractionSolver forMaxTake(int maxTake) {
+    if (maxTake < 1 || maxTake > MAX_TAKE_LIMIT) {
+      throw new IllegalArgumentException("maxTake must be between 1 and " + MAX_TAKE_LIMIT);
+    }
+    return solvers.computeIfAbsent(maxTake, SubtractionSolver::new);
+  }
+
+  SubtractionSolver(int maxTake) {
+    this.maxTake = maxTake;
+    long windowMask = maxTake == 64 ? -1L : (1L << maxTake) - 1;
+
+    // Bit i of window is set if total n - 1 - i is losing, it starts empty below total 0
+    long window = 0;
+    Map<Long, Integer> totalsByWindow = new HashMap<>();
+    BitTable table = new BitTable();
+    int total = 0;
+    while (true) {
+      // A total is losing if no move reaches a losing total
+      boolean totalLosing = window == 0;
+      table.set(total, totalLosing);
+      window = ((window << 1) | (totalLosing ? 1 : 0)) & windowMask;
+
+      Integer previousTotal = totalsByWindow.putIfAbsent(window, total);
+      if (previousTotal != null) {
+        cycleStart = previousTotal;
+        cycleLength = total - previousTotal;
+        break;
+      }
+      total++;
+    }
+
+    losing = table.toArray(total + 1);
+    bestMoves = new byte[total + 1];
+    for (int n = 1; n <= total; n++) {
+      for (int move = 1; move <= Math.min(maxTake, n); move++) {
+        if (isLosingInTable(n - move)) {
+          bestMoves[n] = (byte) move;
+          break;
+        }
+      }
+    }
+  }
+
+  public int getMaxTake() {
+    return maxTake;
+  }
+
+  /** Returns whether the player to move at total loses against a perfect opponent. */
+  public boolean isLosing(long total) {
+    return isLosingInTable(toTableIndex(total));
+  }
+
+  /** Returns a move that leaves the opponent at a losing total, or 0 if there is none. */
+  public int getBestMove(long total) {
+    return bestMoves[toTableIndex(total)];
+  }
+
+  /** Returns the number of totals in the table. */
+  int getTableSize() {
+    return bestMoves.length;
+  }
+
+  private int toTableIndex(long total) {
+    if (total < 0) {
+      throw new IllegalArgumentException("total must not be negative");
+    }
+    if (total < bestMoves.length) {
+      return (int) total;
+    }
+    // Every move available from the repeated total is also available from total
+    return (int) (cycleStart + 1 + (total - cycleStart - 1) % cycleLength);
+  }
+
+  private boolean isLosingInTable(int index) {
+    return (losing[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /** Growable bit set used while solving. */
+  private static final class BitTable {
+    private long[] words = new long[1];
+
+    private void set(int index, boolean value) {
+      if (index >>> 6 >= words.length) {
+        long[] grown = new long[words.length * 2];
+        System.arraycopy(words, 0, grown, 0, words.length);
+        words = grown;
+      }
+      if (value) {
+        words[index >>> 6] |= 1L << index;
+      }
+    }
+
+    private long[] toArray(int size) {
+      long[] array = new long[(size + 63) >>> 6];
+      System.arraycopy(words, 0, array, 0, array.length);
+      return array;
+    }
+  }
+}
@@ -15,49 +15,107 @@
 package com.google.sps.servlets;
 
 import com.google.sps.data.SubtractionGame;
+import com.google.sps.data.SubtractionGameRegistry;
 import com.google.gson.Gson;
 import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that encapsulates the subtraction game. */
-@WebServlet("/subtraction-game")
+/**
+ * Servlet that encapsulates the subtraction game.
+ * The starting total and the most a player can take per turn are set by the
+ * starting-total and max-take init parameters.
+ */
+@WebServlet(
+    urlPatterns = "/subtraction-game",
+    initParams = {
+      @WebInitParam(name = "starting-total", value = "21"),
+      @WebInitParam(name = "max-take", value = "3")
+    })
 public final class SubtractionServlet extends HttpServlet {
 
-  private SubtractionGame game = new SubtractionGame();
+  // Games of up to 10000 players, dropped after 30 minutes without a move
+  private static final int MAX_GAMES = 10000;
+  private static final long IDLE_MILLIS = 30 * 60 * 1000;
+
+  private SubtractionGameRegistry games;
+
+  private final Gson gson = new Gson();
 
+  @Override
+  public void init() throws ServletException {
+    int startingTotal = getIntInitParameter("starting-total");
+    int maxTake = getIntInitParameter("max-take");
+    try {
+      games = new SubtractionGameRegistry(MAX_GAMES, IDLE_MILLIS, startingTotal, maxTake);
+    } catch (IllegalArgumentException e) {
+      throw new ServletException("Invalid subtraction game settings", e);
+    }
+  }
+
+  /**
+   * Returns the state of the player's game.
+   * With a since parameter, only the history lines from that index on are returned.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    SubtractionGame game = games.getGame(request.getSession().getId());
+    String json = gson.toJson(game.getState(getSinceIndex(request)));
+
     response.setContentType("application/json");
-    String json = new Gson().toJson(game);
     response.getWriter().println(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // If the user sends another POST request after the game is over, then start a new game.
-    if (game.isGameOver()) {
-      game = new SubtractionGame();
-    }
+    // Every player, identified by their session, has their own game.
+    SubtractionGame game = games.getGame(request.getSession().getId());
 
     // Get the input from the form.
-    int playerChoice = getPlayerChoice(request);
+    int playerChoice = getPlayerChoice(request, game.getMaxTake());
     if (playerChoice == -1) {
       response.setContentType("text/html");
-      response.getWriter().println("Please enter an integer between 1 and 3.");
+      response.getWriter().println(
+          "Please enter an integer between 1 and " + game.getMaxTake() + ".");
       return;
     }
 
-    game.takePlayerTurn(playerChoice);
+    // If the user sends another POST request after the game is over, then start a new game.
+    game.restartIfOverAndTakePlayerTurn(playerChoice);
 
     // Redirect back to the HTML page.
     response.sendRedirect("/index.html");
   }
 
+  /** Returns the init parameter called name as an int. */
+  private int getIntInitParameter(String name) throws ServletException {
+    String value = getInitParameter(name);
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new ServletException("Init parameter " + name + " is not an integer: " + value, e);
+    }
+  }
+
+  /** Returns the history index requested by the player, or 0 for the whole history. */
+  private long getSinceIndex(HttpServletRequest request) {
+    String sinceString = request.getParameter("since");
+    if (sinceString == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(sinceString);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
   /** Returns the choice entered by the player, or -1 if the choice was invalid. */
-  private int getPlayerChoice(HttpServletRequest request) {
+  private int getPlayerChoice(HttpServletRequest request, int maxTake) {
     // Get the input from the form.
     String playerChoiceString = request.getParameter("player-choice");
 
@@ -70,8 +128,8 @@ public final class SubtractionServlet extends HttpServlet {
       return -1;
     }
 
-    // Check that the input is between 1 and 3.
-    if (playerChoice < 1 || playerChoice > 3) {
+    // Check that the input is between 1 and maxTake.
+    if (playerChoice < 1 || playerChoice > maxTake) {
       System.err.println("Player choice is out of range: " + playerChoiceString);
       return -1;
     }
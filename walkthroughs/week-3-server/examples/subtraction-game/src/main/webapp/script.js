@@ -12,11 +12,17 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+/** Index of the next history line this page has not shown yet. */
+let nextHistoryIndex = 0;
+
 /**
  * Fetches the current state of the game and builds the UI.
+ * Only history lines the page has not shown yet are fetched, then the game is
+ * polled again, so moves made from another tab show up too.
  */
 function getSubtractionGame() {
-  fetch('/subtraction-game').then(response => response.json()).then((game) => {
+  fetch('/subtraction-game?since=' + nextHistoryIndex).then(response => response.json())
+  .then((game) => {
     const totalEl = document.getElementById('total');
     if (game.gameOver) {
       // The current game is over, show the total for the next game.
@@ -25,11 +31,19 @@ function getSubtractionGame() {
       totalEl.innerText = 'Total: ' + game.currentTotal;
     }
 
-    // Build the list of history entries.
+    // Lines before fromIndex are from an earlier game or were dropped, start over.
     const historyEl = document.getElementById('history');
+    if (game.fromIndex > nextHistoryIndex) {
+      historyEl.innerHTML = '';
+    }
+
+    // Add the new history entries.
     game.history.forEach((line) => {
       historyEl.appendChild(createListElement(line));
     });
+    nextHistoryIndex = game.nextIndex;
+
+    setTimeout(getSubtractionGame, 2000);
   });
 }
 
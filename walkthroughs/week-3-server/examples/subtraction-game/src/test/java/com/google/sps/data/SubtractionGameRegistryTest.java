@@ -0,0 +1,148 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for SubtractionGameRegistry, including many players at once. */
+@RunWith(JUnit4.class)
+public final class SubtractionGameRegistryTest {
+
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  @Test
+  public void sameSessionGetsSameGame() {
+    SubtractionGameRegistry games = new SubtractionGameRegistry(100, ONE_HOUR);
+
+    Assert.assertSame(games.getGame("a"), games.getGame("a"));
+    Assert.assertNotSame(games.getGame("a"), games.getGame("b"));
+  }
+
+  @Test
+  public void gamesUseTheRegistrySettings() {
+    SubtractionGameRegistry games = new SubtractionGameRegistry(100, ONE_HOUR, 50, 7);
+    SubtractionGame game = games.getGame("a");
+
+    Assert.assertEquals(50, game.getCurrentTotal());
+    Assert.assertEquals(7, game.getMaxTake());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidSettingsAreRejected() {
+    new SubtractionGameRegistry(100, ONE_HOUR, 0, 3);
+  }
+
+  @Test
+  public void idleGamesAreDropped() throws InterruptedException {
+    SubtractionGameRegistry games = new SubtractionGameRegistry(100, 0);
+    SubtractionGame game = games.getGame("a");
+    Thread.sleep(5);
+
+    Assert.assertNotSame(game, games.getGame("a"));
+  }
+
+  @Test
+  public void numberOfGamesIsBounded() {
+    SubtractionGameRegistry games = new SubtractionGameRegistry(160, ONE_HOUR);
+    for (int i = 0; i < 10000; i++) {
+      games.getGame("session-" + i);
+    }
+
+    Assert.assertTrue(games.size() <= 160);
+  }
+
+  @Test
+  public void thousandsOfConcurrentGamesDoNotAffectEachOther() throws Exception {
+    int playerCount = 5000;
+    SubtractionGameRegistry games = new SubtractionGameRegistry(playerCount * 2, ONE_HOUR);
+    ExecutorService executor = Executors.newFixedThreadPool(32);
+
+    // Every player plays whole games, each taking turns until their game is over
+    List<Future<?>> results = new ArrayList<>();
+    for (int player = 0; player < playerCount; player++) {
+      String sessionId = "session-" + player;
+      results.add(executor.submit(() -> {
+        for (int round = 0; round < 3; round++) {
+          SubtractionGame game = games.getGame(sessionId);
+          game.restartIfOver();
+          while (!game.isGameOver()) {
+            game.takePlayerTurn(1 + sessionId.length() % 3);
+          }
+          assertHistoryIsOneGame(game.getHistory());
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    Assert.assertEquals(playerCount, games.size());
+  }
+
+  @Test
+  public void concurrentTurnsOnOneGameKeepItConsistent() throws Exception {
+    SubtractionGame game = new SubtractionGame();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    List<Future<?>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(executor.submit(() -> {
+        for (int turn = 0; turn < 1000; turn++) {
+          game.restartIfOverAndTakePlayerTurn(1);
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    assertHistoryIsOneGame(game.getHistory());
+  }
+
+  /**
+   * Replays the moves in history, checking every new total follows from the previous one
+   * and that no move comes after the game was won.
+   */
+  private static void assertHistoryIsOneGame(List<String> history) {
+    int total = 21;
+    boolean won = false;
+    for (int i = 0; i < history.size(); i++) {
+      String line = history.get(i);
+      if (line.endsWith(" won!")) {
+        Assert.assertEquals("Won with a total of " + total, 0, total);
+        won = true;
+      } else if (line.contains(" subtracted ")) {
+        Assert.assertFalse("Move after the game was won: " + history, won);
+        Assert.assertTrue("Move from a total of 0: " + history, total > 0);
+        int choice = Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+        // The player may take more than is left, the total then stops at 0
+        total = Math.max(total - choice, 0);
+        Assert.assertEquals("New total: " + total, history.get(++i));
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the history returned by SubtractionGame.getState. */
+@RunWith(JUnit4.class)
+public final class SubtractionGameTest {
+
+  @Test
+  public void sinceReturnsOnlyNewLines() {
+    SubtractionGame game = new SubtractionGame();
+    game.takePlayerTurn(1);
+    SubtractionGameState first = game.getState(0);
+
+    game.takePlayerTurn(1);
+    SubtractionGameState second = game.getState(first.getNextIndex());
+
+    Assert.assertEquals(4, first.getHistory().size());
+    Assert.assertEquals(first.getNextIndex(), second.getFromIndex());
+    Assert.assertEquals(4, second.getHistory().size());
+    Assert.assertEquals("Player 1 subtracted 1", second.getHistory().get(0));
+    Assert.assertTrue(game.getState(second.getNextIndex()).getHistory().isEmpty());
+  }
+
+  @Test
+  public void rematchStartsAfterThePolledIndex() {
+    SubtractionGame game = new SubtractionGame();
+    while (!game.isGameOver()) {
+      game.takePlayerTurn(3);
+    }
+    long polledIndex = game.getState(0).getNextIndex();
+
+    game.restartIfOver();
+    game.takePlayerTurn(2);
+    SubtractionGameState state = game.getState(polledIndex);
+
+    Assert.assertTrue(state.getFromIndex() > polledIndex);
+    Assert.assertEquals("Player 1 subtracted 2", state.getHistory().get(0));
+    Assert.assertEquals(state.getHistory(), game.getHistory());
+  }
+
+  @Test
+  public void noMoveIsTakenAfterTheGameEnded() {
+    SubtractionGame game = new SubtractionGame();
+    while (!game.isGameOver()) {
+      game.takePlayerTurn(3);
+    }
+    SubtractionGameState ended = game.getState(0);
+
+    Assert.assertFalse(game.takePlayerTurn(1));
+    Assert.assertEquals(ended.getNextIndex(), game.getState(0).getNextIndex());
+    Assert.assertEquals(0, game.getCurrentTotal());
+  }
+
+  @Test
+  public void restartAndTurnStartsANewGame() {
+    SubtractionGame game = new SubtractionGame();
+    while (!game.isGameOver()) {
+      game.takePlayerTurn(3);
+    }
+
+    game.restartIfOverAndTakePlayerTurn(2);
+
+    Assert.assertEquals("Player 1 subtracted 2", game.getHistory().get(0));
+    Assert.assertEquals("New total: 19", game.getHistory().get(1));
+  }
+
+  @Test
+  public void wholeGameFromTheSlowestPlayIsKept() {
+    SubtractionGame game = new SubtractionGame(40, 1);
+    while (!game.isGameOver()) {
+      game.takePlayerTurn(1);
+    }
+
+    Assert.assertEquals(0, game.getState(0).getFromIndex());
+    Assert.assertEquals("Player 1 subtracted 1", game.getHistory().get(0));
+    Assert.assertEquals(82, game.getHistory().size());
+  }
+
+  @Test
+  public void sinceADroppedLineStartsAtTheOldestKeptLine() {
+    SubtractionGame game = new SubtractionGame(1000, 1);
+    for (int turn = 0; turn < 300; turn++) {
+      game.takePlayerTurn(1);
+    }
+
+    SubtractionGameState state = game.getState(0);
+
+    Assert.assertEquals(512, state.getHistory().size());
+    Assert.assertEquals(state.getNextIndex() - 512, state.getFromIndex());
+    Assert.assertTrue(state.getFromIndex() > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeStartingTotalIsRejected() {
+    new SubtractionGame(-1, 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxTakeAboveTheSolverLimitIsRejected() {
+    new SubtractionGame(21, 65);
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for SubtractionSolver against a direct search of the game. */
+@RunWith(JUnit4.class)
+public final class SubtractionSolverTest {
+
+  @Test
+  public void matchesBruteForceForSmallTotals() {
+    for (int maxTake = 1; maxTake <= SubtractionSolver.MAX_TAKE_LIMIT; maxTake++) {
+      SubtractionSolver solver = SubtractionSolver.forMaxTake(maxTake);
+      boolean[] losing = bruteForceLosing(maxTake, 1000);
+      for (int total = 0; total < losing.length; total++) {
+        Assert.assertEquals(losing[total], solver.isLosing(total));
+        int move = solver.getBestMove(total);
+        if (losing[total]) {
+          Assert.assertEquals(0, move);
+        } else {
+          Assert.assertTrue(move >= 1 && move <= Math.min(maxTake, total));
+          Assert.assertTrue(losing[total - move]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void handlesHugeTotals() {
+    SubtractionSolver solver = SubtractionSolver.forMaxTake(3);
+    long total = 4_000_000_000_001L;
+
+    Assert.assertFalse(solver.isLosing(total));
+    Assert.assertEquals(1, solver.getBestMove(total));
+    Assert.assertTrue(solver.isLosing(total - 1));
+    Assert.assertTrue(solver.getTableSize() <= 2 * 4);
+  }
+
+  @Test
+  public void solversAreShared() {
+    Assert.assertSame(SubtractionSolver.forMaxTake(5), SubtractionSolver.forMaxTake(5));
+  }
+
+  @Test
+  public void computerWinsOnceThePlayerMisplays() {
+    // From 19 the computer takes 3 and leaves a multiple of 4, so it wins whatever comes next
+    for (int game = 0; game < 100; game++) {
+      SubtractionGame subtractionGame = new SubtractionGame();
+      subtractionGame.takePlayerTurn(2);
+      while (!subtractionGame.isGameOver()) {
+        subtractionGame.takePlayerTurn(1 + game % 3);
+      }
+      Assert.assertTrue(subtractionGame.getHistory().contains("Computer won!"));
+    }
+  }
+
+  private static boolean[] bruteForceLosing(int maxTake, int totals) {
+    boolean[] losing = new boolean[totals];
+    for (int total = 0; total < totals; total++) {
+      losing[total] = true;
+      for (int move = 1; move <= Math.min(maxTake, total); move++) {
+        if (losing[total - move]) {
+          losing[total] = false;
+        }
+      }
+    }
+    return losing;
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+
+/** Reads the JSON array bodies of the batch task endpoints. */
+final class BatchRequests {
+
+  private BatchRequests() {}
+
+  /**
+   * Reads a JSON array of strings or numbers from the request body, as strings.
+   * Other values are returned as null, so every item still gets a result.
+   * Throws IOException if the body is not a JSON array or has more than maxItems items.
+   */
+  static List<String> readValues(HttpServletRequest request, int maxItems) throws IOException {
+    List<String> values = new ArrayList<>();
+    JsonReader jsonReader = new JsonReader(request.getReader());
+    try {
+      jsonReader.beginArray();
+      while (jsonReader.hasNext()) {
+        if (values.size() == maxItems) {
+          throw new IOException("At most " + maxItems + " items can be sent at once");
+        }
+        JsonToken token = jsonReader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+          values.add(jsonReader.nextString());
+        } else {
+          jsonReader.skipValue();
+          values.add(null);
+        }
+      }
+      jsonReader.endArray();
+    } catch (IllegalStateException e) {
+      throw new IOException("The body must be a JSON array", e);
+    }
+    return values;
+  }
+}
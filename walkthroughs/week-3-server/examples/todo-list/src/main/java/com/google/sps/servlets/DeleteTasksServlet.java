@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet responsible for deleting many tasks at once. */
+@WebServlet("/delete-tasks")
+public class DeleteTasksServlet extends HttpServlet {
+
+  // Datastore gets and deletes at most 500 keys per call
+  private static final int CHUNK_SIZE = 500;
+  private static final int MAX_TASKS = 5000;
+
+  /**
+   * Deletes the tasks with the ids in the JSON array body, with one datastore delete per chunk.
+   * Returns a JSON array with, for every id in order, a status of "deleted", "notFound",
+   * "invalid" if the id is not a positive number, or "error" with an error message if
+   * its chunk could not be read or deleted.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<String> idStrings;
+    try {
+      idStrings = BatchRequests.readValues(request, MAX_TASKS);
+    } catch (IOException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    JsonWriter jsonWriter = new JsonWriter(response.getWriter());
+    jsonWriter.beginArray();
+    for (int start = 0; start < idStrings.size(); start += CHUNK_SIZE) {
+      List<String> chunkIds =
+          idStrings.subList(start, Math.min(start + CHUNK_SIZE, idStrings.size()));
+
+      // Find which of the chunk's tasks exist, then delete them together.
+      List<Key> keys = new ArrayList<>();
+      for (String idString : chunkIds) {
+        long id = parseId(idString);
+        keys.add(id > 0 ? KeyFactory.createKey("Task", id) : null);
+      }
+      List<Key> validKeys = new ArrayList<>();
+      for (Key key : keys) {
+        if (key != null) {
+          validKeys.add(key);
+        }
+      }
+
+      // Earlier chunks are already in the response, so a failed call is reported per task.
+      Map<Key, Entity> existing = null;
+      String error = null;
+      try {
+        existing = datastore.get(validKeys);
+        datastore.delete(existing.keySet());
+      } catch (RuntimeException e) {
+        error = existing == null
+            ? "Could not find the task, try again"
+            : "Could not delete the task, try again";
+      }
+
+      for (int i = 0; i < chunkIds.size(); i++) {
+        Key key = keys.get(i);
+        jsonWriter.beginObject();
+        jsonWriter.name("id").value(chunkIds.get(i));
+        if (key == null) {
+          jsonWriter.name("status").value("invalid");
+        } else if (error != null && (existing == null || existing.containsKey(key))) {
+          jsonWriter.name("status").value("error");
+          jsonWriter.name("error").value(error);
+        } else if (existing.containsKey(key)) {
+          jsonWriter.name("status").value("deleted");
+        } else {
+          jsonWriter.name("status").value("notFound");
+        }
+        jsonWriter.endObject();
+      }
+    }
+    jsonWriter.endArray();
+    jsonWriter.flush();
+  }
+
+  /** Returns idString as a long, or -1 if it is not a number. */
+  private static long parseId(String idString) {
+    if (idString == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(idString);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -14,46 +14,93 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.PropertyProjection;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.data.Task;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for listing tasks. */
+/** Servlet responsible for listing tasks, one page at a time. */
 @WebServlet("/list-tasks")
 public class ListTasksServlet extends HttpServlet {
 
+  private static final int DEFAULT_LIMIT = 20;
+  private static final int MAX_LIMIT = 100;
+
+  private final Gson gson = new Gson();
+
+  /**
+   * Returns {"tasks": [...], "nextCursor": ...} with up to limit tasks, newest first.
+   * Pass nextCursor as the cursor parameter to get the next page; it is null on the last page.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Task").addSort("timestamp", SortDirection.DESCENDING);
+    int limit = getLimit(request);
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(limit).chunkSize(limit);
+    String cursorString = request.getParameter("cursor");
+    if (cursorString != null && !cursorString.isEmpty()) {
+      try {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(cursorString));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+        return;
+      }
+    }
+
+    // Only read the properties that are sent, straight from the index.
+    Query query = new Query("Task")
+        .addProjection(new PropertyProjection("title", String.class))
+        .addProjection(new PropertyProjection("timestamp", Long.class))
+        .addSort("timestamp", SortDirection.DESCENDING);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+    QueryResultIterator<Entity> results =
+        datastore.prepare(query).asQueryResultIterator(fetchOptions);
 
-    List<Task> tasks = new ArrayList<>();
-    for (Entity entity : results.asIterable()) {
+    // Write every task as soon as it is read, instead of collecting them first.
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    JsonWriter jsonWriter = gson.newJsonWriter(response.getWriter());
+    jsonWriter.beginObject();
+    jsonWriter.name("tasks").beginArray();
+    int count = 0;
+    while (results.hasNext()) {
+      Entity entity = results.next();
       long id = entity.getKey().getId();
       String title = (String) entity.getProperty("title");
       long timestamp = (long) entity.getProperty("timestamp");
 
       Task task = new Task(id, title, timestamp);
-      tasks.add(task);
+      gson.toJson(task, Task.class, jsonWriter);
+      count++;
     }
+    jsonWriter.endArray();
 
-    Gson gson = new Gson();
+    // A page shorter than limit is the last one.
+    String nextCursor = count < limit ? null : results.getCursor().toWebSafeString();
+    jsonWriter.name("nextCursor").value(nextCursor);
+    jsonWriter.endObject();
+    jsonWriter.flush();
+  }
 
-    response.setContentType("application/json;");
-    response.getWriter().println(gson.toJson(tasks));
+  /** Returns the limit parameter between 1 and MAX_LIMIT, or DEFAULT_LIMIT if it is missing. */
+  private int getLimit(HttpServletRequest request) {
+    try {
+      return Math.max(1, Math.min(Integer.parseInt(request.getParameter("limit")), MAX_LIMIT));
+    } catch (NumberFormatException e) {
+      return DEFAULT_LIMIT;
+    }
   }
 }
@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet responsible for creating many tasks at once. */
+@WebServlet("/new-tasks")
+public class NewTasksServlet extends HttpServlet {
+
+  // Datastore puts at most 500 entities per call
+  private static final int CHUNK_SIZE = 500;
+  private static final int MAX_TASKS = 5000;
+  private static final int MAX_TITLE_BYTES = 1500;
+
+  /**
+   * Creates a task for every title in the JSON array body, with one datastore put per chunk.
+   * Returns a JSON array with, for every title in order, either the new task's id or an error.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<String> titles;
+    try {
+      titles = BatchRequests.readValues(request, MAX_TASKS);
+    } catch (IOException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    long timestamp = System.currentTimeMillis();
+
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    JsonWriter jsonWriter = new JsonWriter(response.getWriter());
+    jsonWriter.beginArray();
+    for (int start = 0; start < titles.size(); start += CHUNK_SIZE) {
+      List<String> chunkTitles = titles.subList(start, Math.min(start + CHUNK_SIZE, titles.size()));
+
+      // Validate every title, so a bad one gets its own error instead of failing the request.
+      List<Entity> taskEntities = new ArrayList<>();
+      String[] errors = new String[chunkTitles.size()];
+      for (int i = 0; i < chunkTitles.size(); i++) {
+        errors[i] = validateTitle(chunkTitles.get(i));
+        if (errors[i] != null) {
+          continue;
+        }
+        try {
+          Entity taskEntity = new Entity("Task");
+          taskEntity.setProperty("title", chunkTitles.get(i));
+          taskEntity.setProperty("timestamp", timestamp);
+          taskEntities.add(taskEntity);
+        } catch (IllegalArgumentException e) {
+          errors[i] = e.getMessage();
+        }
+      }
+
+      // Put the valid titles of the chunk together.
+      // Earlier chunks are already in the response, so a failed put is reported per task.
+      String putError = null;
+      try {
+        datastore.put(taskEntities);
+      } catch (RuntimeException e) {
+        putError = "Could not save the task, try again";
+      }
+
+      // The entities got their ids in the order of the valid titles.
+      int entityIndex = 0;
+      for (int i = 0; i < chunkTitles.size(); i++) {
+        jsonWriter.beginObject();
+        jsonWriter.name("title").value(chunkTitles.get(i));
+        if (errors[i] != null) {
+          jsonWriter.name("error").value(errors[i]);
+        } else if (putError != null) {
+          jsonWriter.name("error").value(putError);
+        } else {
+          jsonWriter.name("id").value(taskEntities.get(entityIndex++).getKey().getId());
+        }
+        jsonWriter.endObject();
+      }
+    }
+    jsonWriter.endArray();
+    jsonWriter.flush();
+  }
+
+  /** Returns why title can't be saved as a task, or null if it can. */
+  private static String validateTitle(String title) {
+    if (title == null || title.isEmpty()) {
+      return "Title must be a non-empty string";
+    }
+    // Datastore indexes strings of up to 1500 bytes.
+    if (title.getBytes(StandardCharsets.UTF_8).length > MAX_TITLE_BYTES) {
+      return "Title must be at most " + MAX_TITLE_BYTES + " bytes";
+    }
+    return null;
+  }
+}
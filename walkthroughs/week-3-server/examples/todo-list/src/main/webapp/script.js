@@ -12,13 +12,40 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches tasks from the server and adds them to the DOM. */
+/** Cursor of the next page of tasks, null when every task was loaded. */
+let nextTasksCursor = null;
+
+/** Fetches the first page of tasks from the server and adds them to the DOM. */
 function loadTasks() {
-  fetch('/list-tasks').then(response => response.json()).then((tasks) => {
+  loadTasksPage('');
+}
+
+/** Fetches the next page of tasks and adds them after the ones already shown. */
+function loadMoreTasks() {
+  if (nextTasksCursor !== null) {
+    loadTasksPage(nextTasksCursor);
+  }
+}
+
+/**
+ * Fetches the page of tasks starting at cursor and adds them to the DOM.
+ * The load more button is disabled until the page arrives, so a second click can't add it twice.
+ */
+function loadTasksPage(cursor) {
+  const loadMoreElement = document.getElementById('load-more');
+  loadMoreElement.disabled = true;
+
+  fetch('/list-tasks?cursor=' + encodeURIComponent(cursor)).then(response => response.json())
+  .then((page) => {
     const taskListElement = document.getElementById('task-list');
-    tasks.forEach((task) => {
+    page.tasks.forEach((task) => {
       taskListElement.appendChild(createTaskElement(task));
-    })
+    });
+
+    nextTasksCursor = page.nextCursor;
+    loadMoreElement.hidden = nextTasksCursor === null;
+  }).finally(() => {
+    loadMoreElement.disabled = false;
   });
 }
 
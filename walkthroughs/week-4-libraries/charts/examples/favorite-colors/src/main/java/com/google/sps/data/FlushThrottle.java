@@ -0,0 +1,49 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when write-behind counts are flushed.
+ *
+ * Every request asks tryStart, and once the interval passed exactly one of them gets true:
+ * only the thread that moves lastFlushMillis forward flushes, the others keep counting.
+ */
+public final class FlushThrottle {
+
+  private final long intervalMillis;
+  private final LongSupplier clock;
+  private final AtomicLong lastFlushMillis;
+
+  public FlushThrottle(long intervalMillis) {
+    this(intervalMillis, System::currentTimeMillis);
+  }
+
+  FlushThrottle(long intervalMillis, LongSupplier clock) {
+    this.intervalMillis = intervalMillis;
+    this.clock = clock;
+    this.lastFlushMillis = new AtomicLong(clock.getAsLong());
+  }
+
+  /** Returns true if the caller should flush now, at most once per interval. */
+  public boolean tryStart() {
+    long now = clock.getAsLong();
+    long lastFlush = lastFlushMillis.get();
+    return now - lastFlush >= intervalMillis && lastFlushMillis.compareAndSet(lastFlush, now);
+  }
+}
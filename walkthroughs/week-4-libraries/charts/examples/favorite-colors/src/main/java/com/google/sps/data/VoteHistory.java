@@ -0,0 +1,188 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps recent votes per option in fixed time buckets.
+ *
+ * Votes are counted in two rings of primitive counters: one bucket per minute
+ * for the last 25 hours and one bucket per hour for the last 31 days, one unit
+ * more than read, so the oldest partial hour or day is complete. Coarser
+ * resolutions are rolled up from these when read, so a trend costs the same
+ * no matter how many votes were cast. Buckets that fall out of a ring are
+ * cleared and reused by newer ones.
+ */
+public final class VoteHistory {
+
+  private static final long MINUTE_MILLIS = 60 * 1000;
+  private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+  /** Time resolutions that history can be read in. */
+  public enum Resolution {
+    MINUTE(MINUTE_MILLIS, 60),
+    HOUR(HOUR_MILLIS, 24),
+    DAY(24 * HOUR_MILLIS, 30);
+
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    Resolution(long bucketMillis, int bucketCount) {
+      this.bucketMillis = bucketMillis;
+      this.bucketCount = bucketCount;
+    }
+
+    public long getBucketMillis() {
+      return bucketMillis;
+    }
+
+    public int getBucketCount() {
+      return bucketCount;
+    }
+  }
+
+  private final int maxOptions;
+  private final Map<String, Integer> optionIndexes = new ConcurrentHashMap<>();
+  private final AtomicInteger nextOptionIndex = new AtomicInteger();
+
+  private final Ring minutes;
+  private final Ring hours;
+
+  public VoteHistory(int maxOptions) {
+    this(maxOptions, System::currentTimeMillis);
+  }
+
+  /** Creates a history whose rings start at the time clock returns. */
+  VoteHistory(int maxOptions, LongSupplier clock) {
+    this.maxOptions = maxOptions;
+    long now = clock.getAsLong();
+    minutes = new Ring(MINUTE_MILLIS, 25 * 60, now);
+    hours = new Ring(HOUR_MILLIS, 31 * 24, now);
+  }
+
+  /**
+   * Counts a vote for option at millis.
+   * Returns false if option is new and the history already has maxOptions options.
+   */
+  public boolean record(String option, long millis) {
+    Integer optionIndex = optionIndexes.get(option);
+    if (optionIndex == null) {
+      synchronized (optionIndexes) {
+        optionIndex = optionIndexes.get(option);
+        if (optionIndex == null) {
+          if (nextOptionIndex.get() >= maxOptions) {
+            return false;
+          }
+          optionIndex = nextOptionIndex.getAndIncrement();
+          optionIndexes.put(option, optionIndex);
+        }
+      }
+    }
+
+    minutes.add(optionIndex, millis);
+    hours.add(optionIndex, millis);
+    return true;
+  }
+
+  /**
+   * Returns the votes of every option in the last resolution.getBucketCount() buckets
+   * ending with the one containing nowMillis, oldest bucket first.
+   */
+  public Map<String, long[]> getVotes(Resolution resolution, long nowMillis) {
+    // Minutes and hours are read from their ring, days are rolled up from hours
+    Ring ring = resolution == Resolution.DAY ? hours : minutes;
+    int ringBucketsPerBucket = (int) (resolution.bucketMillis / ring.bucketMillis);
+    long lastBucket = nowMillis / resolution.bucketMillis;
+    long firstRingBucket = (lastBucket - resolution.bucketCount + 1) * ringBucketsPerBucket;
+
+    Map<String, long[]> votes = new TreeMap<>();
+    for (Map.Entry<String, Integer> entry : optionIndexes.entrySet()) {
+      long[] optionVotes = new long[resolution.bucketCount];
+      for (int i = 0; i < optionVotes.length; i++) {
+        long ringBucket = firstRingBucket + (long) i * ringBucketsPerBucket;
+        for (int j = 0; j < ringBucketsPerBucket; j++) {
+          optionVotes[i] += ring.get(entry.getValue(), ringBucket + j);
+        }
+      }
+      votes.put(entry.getKey(), optionVotes);
+    }
+    return votes;
+  }
+
+  /** Counters of the last size buckets of bucketMillis each, for every option. */
+  private final class Ring {
+    private final long bucketMillis;
+    private final int size;
+
+    // Counter of option o in bucket b is at o * size + b % size
+    private final AtomicLongArray counts;
+
+    // Newest bucket that has a slot, slots of older buckets are still valid
+    private volatile long newestBucket;
+
+    private Ring(long bucketMillis, int size, long nowMillis) {
+      this.bucketMillis = bucketMillis;
+      this.size = size;
+      this.counts = new AtomicLongArray(maxOptions * size);
+      this.newestBucket = nowMillis / bucketMillis;
+    }
+
+    private void add(int optionIndex, long millis) {
+      long bucket = millis / bucketMillis;
+      if (bucket > newestBucket) {
+        advance(bucket);
+      } else if (bucket <= newestBucket - size) {
+        // The bucket was already reused by a newer one
+        return;
+      }
+      counts.incrementAndGet(optionIndex * size + slot(bucket));
+    }
+
+    private long get(int optionIndex, long bucket) {
+      long newest = newestBucket;
+      if (bucket > newest || bucket <= newest - size) {
+        return 0;
+      }
+      long count = counts.get(optionIndex * size + slot(bucket));
+      // The slot may have been cleared for a newer bucket while reading
+      return bucket <= newestBucket - size ? 0 : count;
+    }
+
+    /** Clears the slots of the buckets after newestBucket, up to bucket. */
+    private synchronized void advance(long bucket) {
+      if (bucket <= newestBucket) {
+        return;
+      }
+      for (long cleared = Math.max(newestBucket + 1, bucket - size + 1); cleared <= bucket;
+          cleared++) {
+        for (int optionIndex = 0; optionIndex < maxOptions; optionIndex++) {
+          counts.set(optionIndex * size + slot(cleared), 0);
+        }
+      }
+      // Publish the new bucket only after its slot is cleared
+      newestBucket = bucket;
+    }
+
+    private int slot(long bucket) {
+      return (int) (bucket % size);
+    }
+  }
+}
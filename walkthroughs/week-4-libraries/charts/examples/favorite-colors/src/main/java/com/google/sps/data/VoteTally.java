@@ -0,0 +1,206 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts votes for a fixed set of options from many threads at once.
+ *
+ * Votes are added to LongAdders, so voting never blocks. Reads get a snapshot
+ * of all totals that is already serialized to JSON; it is rebuilt by a single
+ * thread at most once per publish interval, and only after new votes arrived.
+ *
+ * If a DatastoreService is given, new votes are written behind: at most once per
+ * flush interval, the voting thread let through by a FlushThrottle adds the pending
+ * votes to one entity per option. The stored totals, which include the votes of
+ * other instances, are read on creation and again once per refresh interval, so
+ * a total is the stored votes plus the local ones not flushed yet.
+ * Votes not flushed yet are lost if the instance stops without flush().
+ */
+public final class VoteTally {
+
+  private static final String VOTES_KIND = "OptionVotes";
+
+  private static final Gson GSON = new Gson();
+
+  private final DatastoreService datastore;
+  private final Set<String> options;
+  private final long publishIntervalMillis;
+  private final FlushThrottle flushThrottle;
+  private final FlushThrottle refreshThrottle;
+
+  // Votes of every option in datastore, as last read plus the votes this instance flushed since
+  private final Map<String, Long> storedVotes = new ConcurrentHashMap<>();
+
+  // Votes that were not written to datastore yet, or all votes without a datastore
+  private final Map<String, LongAdder> pendingVotes = new ConcurrentHashMap<>();
+
+  private volatile byte[] snapshotJson;
+  private volatile long snapshotMillis;
+  private final AtomicBoolean snapshotStale = new AtomicBoolean(true);
+  private final AtomicBoolean publishing = new AtomicBoolean(false);
+
+  /**
+   * Creates a tally of votes for options.
+   * datastore can be null to keep the votes in memory only.
+   */
+  public VoteTally(DatastoreService datastore, Set<String> options, long publishIntervalMillis,
+      long flushIntervalMillis, long refreshIntervalMillis) {
+    this.datastore = datastore;
+    this.options = Collections.unmodifiableSet(new LinkedHashSet<>(options));
+    this.publishIntervalMillis = publishIntervalMillis;
+    this.flushThrottle = new FlushThrottle(flushIntervalMillis);
+    this.refreshThrottle = new FlushThrottle(refreshIntervalMillis);
+
+    if (datastore != null) {
+      refresh();
+    }
+    publish();
+  }
+
+  /**
+   * Adds a vote for option.
+   * Returns false if option is not one of the options of this tally.
+   */
+  public boolean vote(String option) {
+    if (!options.contains(option)) {
+      return false;
+    }
+    pendingVotes.computeIfAbsent(option, key -> new LongAdder()).increment();
+    snapshotStale.set(true);
+
+    if (datastore != null && flushThrottle.tryStart()) {
+      flush();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the totals as a UTF-8 JSON object from option to votes.
+   * The returned array must not be modified.
+   */
+  public byte[] getSnapshotJson() {
+    if (datastore != null && refreshThrottle.tryStart()) {
+      refresh();
+    }
+
+    if (snapshotStale.get()
+        && System.currentTimeMillis() - snapshotMillis >= publishIntervalMillis
+        && publishing.compareAndSet(false, true)) {
+      try {
+        publish();
+      } finally {
+        publishing.set(false);
+      }
+    }
+    return snapshotJson;
+  }
+
+  /**
+   * Writes the pending votes to datastore.
+   * Votes that could not be written, for any reason, stay pending for the next flush.
+   */
+  public synchronized void flush() {
+    if (datastore == null) {
+      return;
+    }
+
+    for (Map.Entry<String, LongAdder> entry : pendingVotes.entrySet()) {
+      long votes = entry.getValue().sumThenReset();
+      if (votes == 0) {
+        continue;
+      }
+
+      // Count the votes as stored right away, so the totals never miss them
+      storedVotes.merge(entry.getKey(), votes, Long::sum);
+      try {
+        addVotes(entry.getKey(), votes);
+      } catch (RuntimeException e) {
+        // Another instance updated the same option, or datastore failed, retry on the next flush
+        storedVotes.merge(entry.getKey(), -votes, Long::sum);
+        entry.getValue().add(votes);
+      }
+    }
+  }
+
+  /**
+   * Reads the stored votes of every option, including the ones other instances flushed.
+   */
+  private synchronized void refresh() {
+    // Get by key is strongly consistent, unlike a kind query, so totals never go back
+    List<Key> keys = new ArrayList<>();
+    for (String option : options) {
+      keys.add(KeyFactory.createKey(VOTES_KIND, option));
+    }
+    for (Entity entity : datastore.get(keys).values()) {
+      storedVotes.put(entity.getKey().getName(), (Long) entity.getProperty("votes"));
+    }
+    snapshotStale.set(true);
+  }
+
+  private void publish() {
+    // Clear the flag first, so votes during the rebuild mark the new snapshot stale
+    snapshotStale.set(false);
+    SortedMap<String, Long> snapshot = new TreeMap<>();
+    for (Map.Entry<String, Long> entry : storedVotes.entrySet()) {
+      snapshot.merge(entry.getKey(), entry.getValue(), Long::sum);
+    }
+    for (Map.Entry<String, LongAdder> entry : pendingVotes.entrySet()) {
+      snapshot.merge(entry.getKey(), entry.getValue().sum(), Long::sum);
+    }
+    snapshotJson = GSON.toJson(snapshot).getBytes(StandardCharsets.UTF_8);
+    snapshotMillis = System.currentTimeMillis();
+  }
+
+  private void addVotes(String option, long votes) {
+    Key key = KeyFactory.createKey(VOTES_KIND, option);
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity entity;
+      try {
+        entity = datastore.get(transaction, key);
+      } catch (EntityNotFoundException e) {
+        entity = new Entity(key);
+        entity.setProperty("votes", 0L);
+      }
+      entity.setProperty("votes", (Long) entity.getProperty("votes") + votes);
+      datastore.put(transaction, entity);
+      transaction.commit();
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+}
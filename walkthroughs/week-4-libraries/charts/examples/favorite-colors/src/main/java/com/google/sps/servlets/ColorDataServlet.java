@@ -14,11 +14,19 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.data.VoteHistory;
+import com.google.sps.data.VoteHistory.Resolution;
+import com.google.sps.data.VoteTally;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Set;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -28,22 +36,88 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/color-data")
 public class ColorDataServlet extends HttpServlet {
 
-  private Map<String, Integer> colorVotes = new HashMap<>();
+  // The colors offered by index.html, votes for anything else are rejected
+  private static final Set<String> COLORS = Collections.unmodifiableSet(new LinkedHashSet<>(
+      Arrays.asList("Red", "Orange", "Yellow", "Green", "Blue", "Violet")));
+  private static final long PUBLISH_INTERVAL_MILLIS = 500;
+  private static final long FLUSH_INTERVAL_MILLIS = 10 * 1000;
+  private static final long REFRESH_INTERVAL_MILLIS = 10 * 1000;
+
+  private final Gson gson = new Gson();
+
+  private VoteTally colorVotes;
+  private VoteHistory colorHistory;
 
+  @Override
+  public void init() {
+    boolean persist = Boolean.parseBoolean(System.getProperty("colorVotes.persist", "true"));
+    colorVotes = new VoteTally(persist ? DatastoreServiceFactory.getDatastoreService() : null,
+        COLORS, PUBLISH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS);
+    colorHistory = new VoteHistory(COLORS.size());
+  }
+
+  /**
+   * Returns the total votes of every color.
+   * With a resolution parameter of minute, hour or day, returns the recent votes of
+   * every color in buckets of that length instead, oldest first.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String resolutionName = request.getParameter("resolution");
+    if (resolutionName != null) {
+      Resolution resolution;
+      try {
+        resolution = Resolution.valueOf(resolutionName.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown resolution");
+        return;
+      }
+      writeHistory(resolution, response);
+      return;
+    }
+
+    byte[] json = colorVotes.getSnapshotJson();
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(colorVotes);
-    response.getWriter().println(json);
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String color = request.getParameter("color");
-    int currentVotes = colorVotes.containsKey(color) ? colorVotes.get(color) : 0;
-    colorVotes.put(color, currentVotes + 1);
+    if (color == null || !colorVotes.vote(color)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown color");
+      return;
+    }
+    colorHistory.record(color, System.currentTimeMillis());
 
     response.sendRedirect("/index.html");
   }
+
+  @Override
+  public void destroy() {
+    // Save the votes that were not written yet
+    colorVotes.flush();
+  }
+
+  private void writeHistory(Resolution resolution, HttpServletResponse response)
+      throws IOException {
+    long now = System.currentTimeMillis();
+    long bucketMillis = resolution.getBucketMillis();
+    long lastBucketStart = now / bucketMillis * bucketMillis;
+
+    JsonObject json = new JsonObject();
+    json.addProperty("bucketMillis", bucketMillis);
+    json.addProperty("start", lastBucketStart - (resolution.getBucketCount() - 1) * bucketMillis);
+    JsonObject votes = new JsonObject();
+    for (Map.Entry<String, long[]> entry : colorHistory.getVotes(resolution, now).entrySet()) {
+      votes.add(entry.getKey(), gson.toJsonTree(entry.getValue()));
+    }
+    json.add("votes", votes);
+
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().println(gson.toJson(json));
+  }
 }
@@ -14,6 +14,7 @@
 
 google.charts.load('current', {'packages':['corechart']});
 google.charts.setOnLoadCallback(drawChart);
+google.charts.setOnLoadCallback(drawTrendChart);
 
 /** Fetches color data and uses it to create a chart. */
 function drawChart() {
@@ -36,4 +37,37 @@ function drawChart() {
         document.getElementById('chart-container'));
     chart.draw(data, options);
   });
-}
\ No newline at end of file
+}
+
+/** Fetches the vote history in the selected resolution and draws it as lines. */
+function drawTrendChart() {
+  const resolution = document.getElementById('resolution').value;
+  fetch('/color-data?resolution=' + resolution).then(response => response.json())
+  .then((history) => {
+    const colors = Object.keys(history.votes);
+    const data = new google.visualization.DataTable();
+    data.addColumn('datetime', 'Time');
+    colors.forEach((color) => {
+      data.addColumn('number', color);
+    });
+
+    const bucketCount = colors.length > 0 ? history.votes[colors[0]].length : 0;
+    for (let i = 0; i < bucketCount; i++) {
+      const row = [new Date(history.start + i * history.bucketMillis)];
+      colors.forEach((color) => {
+        row.push(history.votes[color][i]);
+      });
+      data.addRow(row);
+    }
+
+    const options = {
+      'title': 'Votes per ' + resolution,
+      'width':600,
+      'height':500
+    };
+
+    const chart = new google.visualization.LineChart(
+        document.getElementById('trend-container'));
+    chart.draw(data, options);
+  });
+}
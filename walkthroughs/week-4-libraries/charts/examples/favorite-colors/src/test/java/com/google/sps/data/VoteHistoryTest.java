@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import com.google.sps.data.VoteHistory.Resolution;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class VoteHistoryTest {
+  private static final long MINUTE = 60 * 1000;
+  private static final long HOUR = 60 * MINUTE;
+  private static final long DAY = 24 * HOUR;
+
+  // Slots in the minute and hour rings
+  private static final int MINUTE_SLOTS = 25 * 60;
+  private static final int HOUR_SLOTS = 31 * 24;
+
+  // A day boundary, so minute, hour and day buckets all start here
+  private static final long START = 18000 * DAY;
+
+  @Test
+  public void countsVotesInMinuteBuckets() {
+    VoteHistory history = new VoteHistory(2, () -> START);
+    history.record("Red", START);
+    history.record("Red", START + 30 * 1000);
+    history.record("Blue", START + 59 * MINUTE);
+
+    Map<String, long[]> votes = history.getVotes(Resolution.MINUTE, START + 59 * MINUTE);
+
+    Assert.assertEquals(60, votes.get("Red").length);
+    Assert.assertEquals(2, votes.get("Red")[0]);
+    Assert.assertEquals(0, votes.get("Red")[59]);
+    Assert.assertEquals(1, votes.get("Blue")[59]);
+    Assert.assertEquals(1, sum(votes.get("Blue")));
+  }
+
+  @Test
+  public void rollsUpMinutesIntoHours() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    history.record("Red", START + 5 * MINUTE);
+    history.record("Red", START + 55 * MINUTE);
+    history.record("Red", START + 23 * HOUR + 10 * MINUTE);
+
+    long[] votes = history.getVotes(Resolution.HOUR, START + 23 * HOUR + 30 * MINUTE).get("Red");
+
+    Assert.assertEquals(24, votes.length);
+    Assert.assertEquals(2, votes[0]);
+    Assert.assertEquals(1, votes[23]);
+    Assert.assertEquals(3, sum(votes));
+  }
+
+  @Test
+  public void rollsUpHoursIntoDays() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    history.record("Red", START + HOUR);
+    history.record("Red", START + 23 * HOUR);
+    history.record("Red", START + 29 * DAY + 12 * HOUR);
+
+    long[] votes = history.getVotes(Resolution.DAY, START + 29 * DAY + 13 * HOUR).get("Red");
+
+    Assert.assertEquals(30, votes.length);
+    Assert.assertEquals(2, votes[0]);
+    Assert.assertEquals(1, votes[29]);
+  }
+
+  @Test
+  public void skippedBucketsAreEmpty() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    history.record("Red", START);
+    history.record("Red", START + 10 * MINUTE);
+
+    long[] votes = history.getVotes(Resolution.MINUTE, START + 10 * MINUTE).get("Red");
+
+    Assert.assertEquals(1, votes[49]);
+    for (int i = 50; i < 59; i++) {
+      Assert.assertEquals(0, votes[i]);
+    }
+    Assert.assertEquals(1, votes[59]);
+  }
+
+  @Test
+  public void reusedSlotsDropTheOldBucket() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    history.record("Red", START);
+
+    // One full turn later the same slot holds the new bucket
+    long later = START + MINUTE_SLOTS * MINUTE;
+    history.record("Red", later);
+
+    long[] votes = history.getVotes(Resolution.MINUTE, later).get("Red");
+    Assert.assertEquals(1, votes[59]);
+    Assert.assertEquals(1, sum(votes));
+
+    // The old bucket is gone even when asked for directly
+    Assert.assertEquals(0, history.getVotes(Resolution.MINUTE, START).get("Red")[59]);
+  }
+
+  @Test
+  public void skippingMoreThanTheRingClearsIt() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    for (int i = 0; i < 10; i++) {
+      history.record("Red", START + i * HOUR);
+    }
+
+    long later = START + (HOUR_SLOTS + 5) * HOUR;
+    history.record("Red", later);
+
+    Assert.assertEquals(1, sum(history.getVotes(Resolution.DAY, later).get("Red")));
+    Assert.assertEquals(1, sum(history.getVotes(Resolution.HOUR, later).get("Red")));
+  }
+
+  @Test
+  public void votesOlderThanTheRingAreIgnored() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    history.record("Red", START);
+
+    history.record("Red", START - MINUTE_SLOTS * MINUTE);
+
+    Assert.assertEquals(1, sum(history.getVotes(Resolution.MINUTE, START).get("Red")));
+  }
+
+  @Test
+  public void wrapsAroundManyTimes() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+    long now = START;
+    for (int turn = 0; turn < 5; turn++) {
+      now += 997 * MINUTE;
+      history.record("Red", now);
+    }
+
+    long[] votes = history.getVotes(Resolution.MINUTE, now).get("Red");
+    Assert.assertEquals(1, votes[59]);
+    Assert.assertEquals(1, sum(votes));
+    Assert.assertEquals(2, sum(history.getVotes(Resolution.HOUR, now).get("Red")));
+  }
+
+  @Test
+  public void rejectsOptionsOverTheLimit() {
+    VoteHistory history = new VoteHistory(1, () -> START);
+
+    Assert.assertTrue(history.record("Red", START));
+    Assert.assertFalse(history.record("Blue", START));
+    Assert.assertFalse(history.getVotes(Resolution.MINUTE, START).containsKey("Blue"));
+  }
+
+  private static long sum(long[] values) {
+    long sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class VoteTallyTest {
+  private static final Set<String> COLORS = new HashSet<>(Arrays.asList("Red", "Blue"));
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private DatastoreService datastore;
+
+  // When true, the datastore given to the tally fails every put
+  private boolean failPuts;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void rejectsUnknownOptions() {
+    VoteTally tally = new VoteTally(null, COLORS, 0, ONE_HOUR, ONE_HOUR);
+
+    Assert.assertTrue(tally.vote("Red"));
+    Assert.assertFalse(tally.vote("red"));
+    Assert.assertFalse(tally.vote("Pink"));
+    Assert.assertEquals(1, (long) snapshot(tally).get("Red"));
+    Assert.assertEquals(1, snapshot(tally).size());
+  }
+
+  @Test
+  public void ignoresStoredVotesOfUnknownOptions() {
+    datastore.put(votesEntity("Red", 3));
+    datastore.put(votesEntity("<script>", 100));
+
+    VoteTally tally = new VoteTally(datastore, COLORS, 0, ONE_HOUR, ONE_HOUR);
+
+    Map<String, Long> snapshot = snapshot(tally);
+    Assert.assertEquals(3, (long) snapshot.get("Red"));
+    Assert.assertFalse(snapshot.containsKey("<script>"));
+  }
+
+  @Test
+  public void flushedVotesAreStoredAndStillCounted() throws Exception {
+    VoteTally tally = new VoteTally(datastore, COLORS, 0, ONE_HOUR, ONE_HOUR);
+    tally.vote("Red");
+    tally.vote("Red");
+
+    tally.flush();
+
+    Entity stored = datastore.get(KeyFactory.createKey("OptionVotes", "Red"));
+    Assert.assertEquals(2L, stored.getProperty("votes"));
+    Assert.assertEquals(2, (long) snapshot(tally).get("Red"));
+  }
+
+  @Test
+  public void failedFlushKeepsVotesPending() throws Exception {
+    VoteTally tally = new VoteTally(failingDatastore(), COLORS, 0, ONE_HOUR, ONE_HOUR);
+    tally.vote("Blue");
+
+    failPuts = true;
+    tally.flush();
+    Assert.assertEquals(1, (long) snapshot(tally).get("Blue"));
+
+    failPuts = false;
+    tally.flush();
+    Entity stored = datastore.get(KeyFactory.createKey("OptionVotes", "Blue"));
+    Assert.assertEquals(1L, stored.getProperty("votes"));
+    Assert.assertEquals(1, (long) snapshot(tally).get("Blue"));
+  }
+
+  @Test
+  public void refreshPicksUpVotesOfOtherInstances() {
+    VoteTally tally = new VoteTally(datastore, COLORS, 0, ONE_HOUR, 0);
+    VoteTally otherTally = new VoteTally(datastore, COLORS, 0, ONE_HOUR, 0);
+    otherTally.vote("Blue");
+    otherTally.flush();
+    tally.vote("Blue");
+
+    Assert.assertEquals(2, (long) snapshot(tally).get("Blue"));
+  }
+
+  private static Entity votesEntity(String option, long votes) {
+    Entity entity = new Entity("OptionVotes", option);
+    entity.setProperty("votes", votes);
+    return entity;
+  }
+
+  private static Map<String, Long> snapshot(VoteTally tally) {
+    String json = new String(tally.getSnapshotJson(), StandardCharsets.UTF_8);
+    return new Gson().fromJson(json, new TypeToken<Map<String, Long>>() {}.getType());
+  }
+
+  /** Returns the local datastore, failing puts with DatastoreFailureException while failPuts */
+  private DatastoreService failingDatastore() {
+    return (DatastoreService) Proxy.newProxyInstance(
+        DatastoreService.class.getClassLoader(),
+        new Class<?>[] {DatastoreService.class},
+        (proxy, method, args) -> {
+          if (failPuts && method.getName().equals("put")) {
+            throw new DatastoreFailureException("Injected failure");
+          }
+          try {
+            return method.invoke(datastore, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+}